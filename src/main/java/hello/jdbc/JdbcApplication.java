@@ -1,7 +1,17 @@
 package hello.jdbc;
 
+import hello.jdbc.connection.ConnectionWarmUp;
+import hello.jdbc.connection.LazyConnectionPostProcessor;
+import hello.jdbc.repository.H2Functions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.time.Duration;
 
 @SpringBootApplication
 public class JdbcApplication {
@@ -10,4 +20,27 @@ public class JdbcApplication {
 		SpringApplication.run(JdbcApplication.class, args);
 	}
 
+	// 커넥션 풀 예열이 끝나야 애플리케이션이 준비 완료 상태가 된다.
+	@Bean
+	@ConditionalOnProperty(name = "jdbc.warmup.enabled", matchIfMissing = true)
+	ConnectionWarmUp connectionWarmUp(DataSource dataSource,
+									  @Value("${jdbc.warmup.timeout:30s}") Duration timeout) {
+		return ConnectionWarmUp.forDataSource(dataSource, timeout);
+	}
+
+	// H2 서버(tcp)에 TRANSFER_MONEY 함수를 등록한다. mem, file 은 schema.sql 이 등록한다.
+	// 이미 등록된 함수의 소스가 다르면 (예전 버전) 다시 만든다.
+	@Bean
+	@ConditionalOnProperty(name = "jdbc.h2-functions.enabled", matchIfMissing = true)
+	ApplicationRunner h2Functions(DataSource dataSource) {
+		return args -> H2Functions.register(dataSource);
+	}
+
+	// 트랜잭션 커넥션을 첫 SQL 을 실행할 때 가져온다.
+	@Bean
+	@ConditionalOnProperty(name = "jdbc.lazy-connection.enabled", havingValue = "true")
+	static LazyConnectionPostProcessor lazyConnectionPostProcessor() {
+		return new LazyConnectionPostProcessor();
+	}
+
 }
@@ -0,0 +1,331 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *  측정한 지연 시간으로 커넥션 풀 크기를 조정한다.
+ *
+ *  MeteredDataSource 의 측정값을 주기적으로 읽어서
+ *  - 목표 동시성 = 초당 커넥션 요청 수 * 평균 사용 시간 (Little's law) 에 여유분(headroom)을 더한 값으로 맞춘다.
+ *  - 커넥션을 얻으려고 기다린 시간이 acquireWaitThreshold 를 넘거나 타임아웃이 나면 목표와 상관없이 한 단계 키운다.
+ *  - 줄일 때는 한 번에 step 만큼만 줄여서 부하가 튈 때 풀이 출렁이지 않게 한다.
+ *
+ *  풀 크기를 실제로 바꾸는 것은 Resizer 가 한다. ConnectionPool, HikariDataSource 는 resizerFor() 가 찾아주고
+ *  그 밖의 DataSource 는 결정(PoolSizeDecision)만 기록한다.
+ */
+@Slf4j
+public class AdaptivePoolSizer implements AdaptivePoolSizerMXBean, AutoCloseable {
+
+    static final int HISTORY_SIZE = 100;
+    static final double DEFAULT_HEADROOM = 0.2;
+
+    private final MeteredDataSource metrics;
+    private final Resizer resizer;
+    private final int minSize;
+    private final int maxSize;
+    private final int step;
+    private final double headroom;
+    private final long acquireWaitThresholdMicros;
+
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentLinkedDeque<PoolSizeDecision> history = new ConcurrentLinkedDeque<>();
+    private final AtomicReference<PoolSizeDecision> last = new AtomicReference<>();
+    private final LongAdder growCount = new LongAdder();
+    private final LongAdder shrinkCount = new LongAdder();
+    // 주기 실행과 직접 호출한 adjust() 가 겹쳐도 지난 측정값(previous, previousNanos)은 한 번에 하나만 읽고 바꾼다.
+    private final ReentrantLock adjustLock = new ReentrantLock();
+    private DataSourceMetrics previous;
+    private long previousNanos;
+    private ObjectName objectName;
+
+    /**
+     *  여유분은 20%, 단계는 (maxSize - minSize) / 4 로 조정한다.
+     *
+     * @param interval 조정 주기, Duration.ZERO 이면 adjust() 를 직접 호출해야 한다.
+     */
+    public AdaptivePoolSizer(MeteredDataSource metrics, Resizer resizer, int minSize, int maxSize,
+                             Duration acquireWaitThreshold, Duration interval) {
+        this(metrics, resizer, minSize, maxSize, acquireWaitThreshold, interval,
+                DEFAULT_HEADROOM, Math.max(1, (maxSize - minSize) / 4));
+    }
+
+    /**
+     * @param interval 조정 주기, Duration.ZERO 이면 adjust() 를 직접 호출해야 한다.
+     * @param headroom 목표 동시성에 더할 여유분 비율, 0.2 이면 20% 더 잡는다.
+     * @param step 한 번에 키우거나 줄이는 커넥션 수
+     */
+    public AdaptivePoolSizer(MeteredDataSource metrics, Resizer resizer, int minSize, int maxSize,
+                             Duration acquireWaitThreshold, Duration interval, double headroom, int step) {
+        if (minSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("invalid pool size bounds min = " + minSize + ", max = " + maxSize);
+        }
+        // 풀이 받아주지 않는 크기로는 줄일 수 없다. 풀의 최소 크기가 maxSize 보다 크면 조정할 범위가 없다.
+        if (resizer.minSize() > maxSize) {
+            throw new IllegalArgumentException("pool min size " + resizer.minSize() + " exceeds max = " + maxSize);
+        }
+        if (headroom < 0 || step < 1) {
+            throw new IllegalArgumentException("invalid headroom = " + headroom + ", step = " + step);
+        }
+        this.metrics = metrics;
+        this.resizer = resizer;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.step = step;
+        this.headroom = headroom;
+        this.acquireWaitThresholdMicros = TimeUnit.NANOSECONDS.toMicros(acquireWaitThreshold.toNanos());
+        this.previous = metrics.snapshot();
+        this.previousNanos = System.nanoTime();
+
+        if (interval.isZero()) {
+            scheduler = null;
+        } else {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "adaptive-pool-sizer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::adjustQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     *  지난 조정 이후의 측정값으로 풀 크기를 한 번 조정한다.
+     */
+    public PoolSizeDecision adjust() {
+        adjustLock.lock();
+        try {
+            DataSourceMetrics current = metrics.snapshot();
+            long now = System.nanoTime();
+            double seconds = Math.max(1e-9, (now - previousNanos) / 1e9);
+
+            long acquires = current.getAcquireCount() - previous.getAcquireCount();
+            long holds = current.getHoldTime().getCount() - previous.getHoldTime().getCount();
+            long holdMicros = current.getHoldTime().getTotalMicros() - previous.getHoldTime().getTotalMicros();
+            long waitMicros = current.getAcquireTime().getTotalMicros() - previous.getAcquireTime().getTotalMicros();
+            long timeouts = current.getAcquireTimeouts() - previous.getAcquireTimeouts();
+            previous = current;
+            previousNanos = now;
+
+            double arrivalRate = acquires / seconds;
+            double holdMillis = holds == 0 ? 0 : holdMicros / 1_000.0 / holds;
+            double avgWaitMicros = acquires == 0 ? 0 : (double) waitMicros / acquires;
+            // 아직 반납되지 않은 커넥션은 사용 시간에 잡히지 않으므로 지금 사용 중인 수보다 작게 잡지 않는다.
+            double targetConcurrency = Math.max(arrivalRate * holdMillis / 1_000.0, current.getInUse());
+
+            int size = resizer.currentSize();
+            int target = (int) Math.ceil(targetConcurrency * (1 + headroom));
+            if (avgWaitMicros > acquireWaitThresholdMicros || timeouts > 0) {
+                target = Math.max(target, size + step); // 대기가 생겼다면 풀이 모자란 것
+            } else if (target < size) {
+                target = Math.max(target, size - step); // 천천히 줄인다.
+            }
+            // 풀의 최소 크기는 실행 중에 바뀔 수 있으므로 조정할 때마다 읽는다.
+            int floor = Math.max(minSize, resizer.minSize());
+            int newSize = Math.max(floor, Math.min(maxSize, target));
+
+            PoolSizeDecision decision = new PoolSizeDecision(System.currentTimeMillis(), arrivalRate, holdMillis,
+                    avgWaitMicros / 1_000.0, timeouts, targetConcurrency, size, newSize);
+            if (newSize > size) {
+                growCount.increment();
+            } else if (newSize < size) {
+                shrinkCount.increment();
+            }
+            if (decision.isResized()) {
+                log.info("resize pool {} -> {}, arrivalRate = {}/s, holdTime = {}ms, acquireWait = {}ms, timeouts = {}",
+                        size, newSize, String.format("%.1f", arrivalRate), String.format("%.2f", holdMillis),
+                        String.format("%.2f", decision.getAcquireWaitMillis()), timeouts);
+                resizer.resize(newSize);
+            }
+            record(decision);
+            return decision;
+        } finally {
+            adjustLock.unlock();
+        }
+    }
+
+    private void adjustQuietly() {
+        try {
+            adjust();
+        } catch (RuntimeException e) {
+            log.warn("adaptive pool sizing failed", e);
+        }
+    }
+
+    private void record(PoolSizeDecision decision) {
+        last.set(decision);
+        history.addLast(decision);
+        while (history.size() > HISTORY_SIZE) {
+            history.pollFirst();
+        }
+    }
+
+    /**
+     *  최근 조정 기록 (오래된 것부터)
+     */
+    public List<PoolSizeDecision> getDecisions() {
+        return new ArrayList<>(history);
+    }
+
+    public PoolSizeDecision getLastDecision() {
+        return last.get();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return resizer.currentSize();
+    }
+
+    @Override
+    public double getArrivalRatePerSecond() {
+        PoolSizeDecision decision = last.get();
+        return decision == null ? 0 : decision.getArrivalRatePerSecond();
+    }
+
+    @Override
+    public double getHoldTimeMillis() {
+        PoolSizeDecision decision = last.get();
+        return decision == null ? 0 : decision.getHoldTimeMillis();
+    }
+
+    @Override
+    public double getAcquireWaitMillis() {
+        PoolSizeDecision decision = last.get();
+        return decision == null ? 0 : decision.getAcquireWaitMillis();
+    }
+
+    @Override
+    public double getTargetConcurrency() {
+        PoolSizeDecision decision = last.get();
+        return decision == null ? 0 : decision.getTargetConcurrency();
+    }
+
+    @Override
+    public long getGrowCount() {
+        return growCount.sum();
+    }
+
+    @Override
+    public long getShrinkCount() {
+        return shrinkCount.sum();
+    }
+
+    /**
+     *  JMX 등록 - hello.jdbc:type=AdaptivePoolSizer,name={name}
+     */
+    public void registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("hello.jdbc:type=AdaptivePoolSizer,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register pool sizer mbean, name = " + name, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.info("cannot unregister pool sizer mbean {}", objectName, e);
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     *  풀 크기를 읽고 바꾸는 방법
+     */
+    public interface Resizer {
+        int currentSize();
+
+        void resize(int size);
+
+        /**
+         *  풀이 받아주는 가장 작은 크기, 이보다 작게는 resize() 하지 않는다.
+         */
+        default int minSize() {
+            return 1;
+        }
+    }
+
+    /**
+     *  DataSource 가 크기를 바꿀 수 있는 풀이면 그 풀의 Resizer, 아니면 결정만 기록하는 Resizer 를 돌려준다.
+     */
+    public static Resizer resizerFor(DataSource dataSource, int initialSize) {
+        try {
+            if (dataSource.isWrapperFor(ConnectionPool.class)) {
+                ConnectionPool pool = dataSource.unwrap(ConnectionPool.class);
+                return new Resizer() {
+                    @Override
+                    public int currentSize() {
+                        return pool.getMaxSize();
+                    }
+
+                    @Override
+                    public void resize(int size) {
+                        pool.setMaxSize(size);
+                    }
+
+                    @Override
+                    public int minSize() {
+                        // setMaxSize() 는 ConnectionPoolConfig.minSize 보다 작은 크기를 거부한다.
+                        return Math.max(1, pool.getConfig().getMinSize());
+                    }
+                };
+            }
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+                return new Resizer() {
+                    @Override
+                    public int currentSize() {
+                        return hikari.getHikariConfigMXBean().getMaximumPoolSize();
+                    }
+
+                    @Override
+                    public void resize(int size) {
+                        // HikariCP 는 실행 중에도 HikariConfigMXBean 으로 최대 크기를 바꿀 수 있다.
+                        hikari.getHikariConfigMXBean().setMaximumPoolSize(size);
+                    }
+                };
+            }
+        } catch (SQLException e) {
+            log.info("cannot inspect pool, decisions will not be applied", e);
+        }
+        log.info("{} cannot be resized, pool size decisions are only recorded", dataSource.getClass().getName());
+        return new Resizer() {
+            private volatile int size = initialSize;
+
+            @Override
+            public int currentSize() {
+                return size;
+            }
+
+            @Override
+            public void resize(int size) {
+                this.size = size;
+            }
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package hello.jdbc.connection;
+
+/**
+ *  AdaptivePoolSizer 의 JMX 노출 항목 - 마지막 조정 판단의 근거와 결과
+ */
+public interface AdaptivePoolSizerMXBean {
+
+    int getPoolSize();
+
+    double getArrivalRatePerSecond();
+
+    double getHoldTimeMillis();
+
+    double getAcquireWaitMillis();
+
+    double getTargetConcurrency();
+
+    long getGrowCount();
+
+    long getShrinkCount();
+}
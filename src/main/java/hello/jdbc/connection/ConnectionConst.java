@@ -3,7 +3,38 @@ package hello.jdbc.connection;
 public abstract class ConnectionConst {
     // 상수를 모아놔서 객체를 생성해서 수정하면 안되게 하기 위해 abstract class 로 생성
     // abstract class 는 객체를 생성할 수 없다.
-    public static final String URL = "jdbc:h2:tcp://localhost/~/test";
+
+    // 접속 방식 - 시스템 프로퍼티 jdbc.mode 또는 환경 변수 JDBC_MODE 로 고른다. (기본 tcp)
+    // tcp  : H2 서버에 접속
+    // mem  : 같은 JVM 안의 메모리 DB, JVM 이 끝나면 사라진다.
+    // file : 같은 JVM 안의 파일 DB (./build/h2/test)
+    // mem, file 은 물리 커넥션을 열 때마다 schema.sql (h2-functions.sql 포함) 을 실행해서 member 테이블과 이체 함수를 만든다.
+    // 커넥션마다 다시 실행되므로 두 스크립트의 모든 문장은 여러 번 실행해도 결과가 같아야 한다. (if not exists)
+    public static final String MODE = mode();
+    public static final String URL = url(MODE);
     public static final String USERNAME = "sa";
     public static final String PASSWORD = "";
+
+    // H2 의 INIT 은 DB 를 처음 만들 때가 아니라 새 물리 커넥션마다 실행된다.
+    static final String SCHEMA_INIT = ";INIT=RUNSCRIPT FROM 'classpath:schema.sql'";
+    // 임베디드 H2 는 이 설정이 없으면 fetch size 와 상관없이 결과 전체를 만든 뒤에 돌려준다. (streamAll 이 조금씩 읽으려면 필요)
+    static final String LAZY_QUERY = ";LAZY_QUERY_EXECUTION=TRUE";
+
+    static String mode() {
+        String mode = System.getProperty("jdbc.mode", System.getenv("JDBC_MODE"));
+        return mode == null || mode.isBlank() ? "tcp" : mode.trim().toLowerCase();
+    }
+
+    static String url(String mode) {
+        switch (mode) {
+            case "tcp":
+                return "jdbc:h2:tcp://localhost/~/test";
+            case "mem":
+                return "jdbc:h2:mem:test;DB_CLOSE_DELAY=-1" + LAZY_QUERY + SCHEMA_INIT;
+            case "file":
+                return "jdbc:h2:file:./build/h2/test" + LAZY_QUERY + SCHEMA_INIT;
+            default:
+                throw new IllegalArgumentException("unknown jdbc.mode " + mode + ", expected tcp, mem or file");
+        }
+    }
 }
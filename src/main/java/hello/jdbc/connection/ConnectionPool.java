@@ -0,0 +1,555 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *  커넥션 풀
+ *  DriverManager 로 만든 물리 커넥션을 maxSize 까지만 만들어 두고 재사용한다.
+ *  getConnection() 이 돌려주는 커넥션의 close() 는 물리 커넥션을 닫지 않고 풀에 반납한다.
+ *
+ *  - 커넥션이 없으면 acquireTimeoutMillis 까지 기다린다. 공정(fair) 세마포어를 사용하므로 먼저 기다린 스레드가 먼저 받는다.
+ *    Deadline.within() 안에서는 남은 시간이 더 짧으면 그만큼만 기다린다.
+ *  - idleTimeoutMillis 이상 사용되지 않은 커넥션은 minSize 를 넘는 만큼 정리한다.
+ *  - statementCacheSize 가 0 보다 크면 물리 커넥션마다 prepareStatement(sql) 결과를 캐시한다. (StatementCache)
+ *    statement 의 close() 는 캐시에 돌려놓을 뿐이고, 물리 커넥션을 닫을 때 함께 닫는다.
+ *
+ *  synchronized 를 사용하지 않는다. 대기는 Semaphore, 유휴 커넥션 주고받기는 lock-free 큐(ConcurrentLinkedDeque)로 하므로
+ *  가상 스레드(virtual thread)가 커넥션을 기다려도 캐리어 스레드를 붙잡지(pinning) 않는다.
+ */
+@Slf4j
+public class ConnectionPool extends AbstractDataSource implements AutoCloseable {
+
+    private final ConnectionPoolConfig config;
+
+    // 빌려줄 수 있는 커넥션 수, 빌려줄 때 획득하고 반납할 때 돌려준다.
+    private final ResizableSemaphore permits;
+    private final AtomicInteger maxSize; // 실행 중에 setMaxSize() 로 바뀔 수 있다.
+    // 최근에 반납된 커넥션을 앞에 넣는다. 뒤쪽에는 오래 놀고 있는 커넥션이 남는다.
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger total = new AtomicInteger(); // 만들고 있는 커넥션까지 포함한 전체 커넥션 수
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    private final ScheduledExecutorService housekeeper;
+
+    public ConnectionPool(ConnectionPoolConfig config) {
+        config.validate();
+        this.config = config;
+        this.maxSize = new AtomicInteger(config.getMaxSize());
+        this.permits = new ResizableSemaphore(config.getMaxSize());
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, config.getPoolName() + "-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getEvictionIntervalMillis();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        checkOpen();
+        Deadline.check("getConnection");
+        // Deadline.within() 안이면 남은 시간까지만 기다린다.
+        long timeoutNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(config.getAcquireTimeoutMillis()), Deadline.remainingNanos());
+        long deadline = System.nanoTime() + timeoutNanos;
+        try {
+            if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new SQLTimeoutException(config.getPoolName() + " - connection is not available, request timed out after "
+                        + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for a connection", e);
+        }
+
+        try {
+            return lease(take(deadline));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("ConnectionPool 은 설정된 계정만 사용한다.");
+    }
+
+    public int getTotalConnections() {
+        return total.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return maxSize.get() - permits.availablePermits();
+    }
+
+    public int getMaxSize() {
+        return maxSize.get();
+    }
+
+    /**
+     *  실행 중에 최대 커넥션 수를 바꾼다.
+     *  줄일 때는 넘치는 유휴 커넥션을 바로 닫는다. 빌려준 커넥션은 회수하지 않고, 반납되는 커넥션부터 닫아서 새 크기에 맞춘다.
+     */
+    public void setMaxSize(int newMaxSize) {
+        if (newMaxSize < 1 || newMaxSize < config.getMinSize()) {
+            throw new IllegalArgumentException("invalid pool size min = " + config.getMinSize() + ", max = " + newMaxSize);
+        }
+        int delta = newMaxSize - maxSize.getAndSet(newMaxSize);
+        if (delta > 0) {
+            permits.release(delta);
+        } else if (delta < 0) {
+            permits.reducePermits(-delta);
+        }
+        if (delta < 0) {
+            evictSurplusIdle();
+        }
+        if (delta != 0) {
+            log.info("{} - resized maxSize to {}", config.getPoolName(), newMaxSize);
+        }
+    }
+
+    /**
+     *  전체 커넥션이 maxSize 보다 많으면 오래 놀고 있는 커넥션부터 닫는다.
+     */
+    private void evictSurplusIdle() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        PooledConnection pooled;
+        while (total.get() > maxSize.get() && (pooled = idle.pollLast()) != null) {
+            total.decrementAndGet();
+            evicted.add(pooled);
+        }
+        if (!evicted.isEmpty()) {
+            log.debug("{} - closed {} idle connections above maxSize", config.getPoolName(), evicted.size());
+        }
+        evicted.forEach(PooledConnection::closePhysical);
+    }
+
+    public int getThreadsAwaitingConnection() {
+        return permits.getQueueLength();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    public ConnectionPoolConfig getConfig() {
+        return config;
+    }
+
+    /**
+     *  유휴 커넥션을 닫는다. 여러 스레드가 동시에 불러도 한 번만 정리한다.
+     *  커넥션을 기다리던 스레드는 타임아웃까지 기다리지 않고 바로 "pool is closed" 예외를 받는다.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            total.decrementAndGet();
+            pooled.closePhysical();
+        }
+        // 기다리던 스레드를 깨운다. 허가를 받은 스레드는 take() 에서 닫힌 것을 보고 허가를 돌려주므로
+        // 그 사이에 줄을 선 스레드도 차례로 깨어난다.
+        permits.release(Math.max(1, permits.getQueueLength()));
+        log.info("{} - closed", config.getPoolName());
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("connection pool is closed, pool = " + config.getPoolName());
+        }
+    }
+
+    /**
+     *  허가(permit)를 받은 스레드가 유휴 커넥션을 가져가거나 새로 만든다.
+     */
+    private PooledConnection take(long deadline) throws SQLException {
+        while (true) {
+            checkOpen();
+            PooledConnection pooled = idle.pollFirst();
+            if (pooled != null) {
+                if (isAlive(pooled)) {
+                    return pooled;
+                }
+                discard(pooled);
+                continue;
+            }
+            if (tryReserve()) {
+                return createPhysical();
+            }
+            // 허가는 받았지만 다른 스레드가 반납 중이거나 정리 중이라 잠깐 비어 있는 경우
+            if (System.nanoTime() - deadline > 0) {
+                throw new SQLTimeoutException(config.getPoolName() + " - connection is not available, request timed out");
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     *  maxSize 를 넘지 않을 때만 새 커넥션 자리를 예약한다.
+     */
+    private boolean tryReserve() {
+        while (true) {
+            int current = total.get();
+            if (current >= maxSize.get()) {
+                return false;
+            }
+            if (total.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private PooledConnection createPhysical() throws SQLException {
+        try {
+            Connection physical = DriverManager.getConnection(config.getUrl(), config.getUsername(), config.getPassword());
+            log.debug("{} - added connection {}", config.getPoolName(), physical);
+            return new PooledConnection(physical, config.getStatementCacheSize());
+        } catch (SQLException | RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean isAlive(PooledConnection pooled) {
+        long idleNanos = System.nanoTime() - pooled.lastReturnedNanos;
+        if (idleNanos < TimeUnit.MILLISECONDS.toNanos(config.getValidationThresholdMillis())) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection lease(PooledConnection pooled) {
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new LeasedConnectionHandler(pooled));
+    }
+
+    /**
+     *  커넥션 반납
+     *  트랜잭션을 쓰다 반납된 커넥션은 롤백하고 autoCommit 을 true 로 되돌린 뒤 풀에 넣는다.
+     *  큐에 먼저 넣고 허가를 돌려줘야 허가를 받은 스레드가 이 커넥션을 바로 가져갈 수 있다.
+     */
+    private void giveBack(PooledConnection pooled) {
+        try {
+            release(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            log.info("{} - discard broken connection {}", config.getPoolName(), pooled.physical, e);
+            discard(pooled);
+            return;
+        }
+
+        if (total.get() > maxSize.get()) { // 풀 크기를 줄인 뒤 넘치는 커넥션
+            discard(pooled);
+            return;
+        }
+        pooled.lastReturnedNanos = System.nanoTime();
+        idle.offerFirst(pooled);
+        if (closed.get() && idle.remove(pooled)) { // 반납하는 사이에 풀이 닫혔다.
+            discard(pooled);
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        pooled.closePhysical();
+    }
+
+    /**
+     *  오래 놀고 있는 커넥션을 정리하고, 전체 커넥션이 minSize 보다 적으면 채워 넣는다.
+     */
+    private void housekeep() {
+        if (closed.get()) {
+            return;
+        }
+        long idleTimeout = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        long now = System.nanoTime();
+        List<PooledConnection> evicted = new ArrayList<>();
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && total.get() > config.getMinSize()) {
+            PooledConnection pooled = oldestFirst.next();
+            if (now - pooled.lastReturnedNanos < idleTimeout) {
+                break;
+            }
+            // remove 에 성공한 경우에만 정리한다. 실패했다면 이미 다른 스레드가 가져갔다.
+            if (idle.remove(pooled)) {
+                total.decrementAndGet();
+                evicted.add(pooled);
+            }
+        }
+        if (!evicted.isEmpty()) {
+            log.debug("{} - evicted {} idle connections", config.getPoolName(), evicted.size());
+        }
+        evicted.forEach(PooledConnection::closePhysical);
+
+        while (!closed.get() && total.get() < config.getMinSize() && tryReserve()) {
+            try {
+                release(createPhysical());
+            } catch (SQLException e) {
+                log.warn("{} - failed to fill pool", config.getPoolName(), e);
+                break;
+            }
+        }
+    }
+
+    /**
+     *  reducePermits() 가 protected 라서 풀 크기를 줄일 수 있도록 열어준다.
+     */
+    private static class ResizableSemaphore extends Semaphore {
+
+        ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    private static class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements; // 캐시를 쓰지 않으면 null
+        private volatile long lastReturnedNanos = System.nanoTime();
+
+        PooledConnection(Connection physical, int statementCacheSize) {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+        }
+
+        void closePhysical() {
+            if (statements != null) {
+                statements.closeAll();
+            }
+            JdbcUtils.closeConnection(physical);
+        }
+    }
+
+    /**
+     *  빌려준 커넥션
+     *  close() 를 호출하면 물리 커넥션을 닫지 않고 풀에 반납한다.
+     *  반납한 뒤에는 더 이상 사용할 수 없다.
+     */
+    private class LeasedConnectionHandler implements InvocationHandler {
+
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        LeasedConnectionHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return config.getPoolName() + "[" + pooled.physical + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("connection is already returned to the pool");
+                    }
+            }
+            if (pooled.statements != null && method.getName().equals("prepareStatement") && args.length == 1) {
+                return prepareCached(proxy, (String) args[0]);
+            }
+            Object result;
+            try {
+                result = method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            // statement.getConnection() 도 빌려준 커넥션을 돌려줘야 그걸 닫았을 때 물리 커넥션이 아니라 풀로 반납된다.
+            return StatementProxy.wrap(proxy, method, result);
+        }
+
+        private PreparedStatement prepareCached(Object proxy, String sql) throws SQLException {
+            PreparedStatement statement = pooled.statements.take(sql);
+            if (statement == null || statement.isClosed()) {
+                statementCacheMisses.increment();
+                statement = pooled.physical.prepareStatement(sql);
+            } else {
+                statementCacheHits.increment();
+            }
+            return (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new CachedStatementHandler(this, proxy, sql, statement));
+        }
+    }
+
+    /**
+     *  캐시에서 꺼낸 PreparedStatement
+     *  close() 를 호출하면 파라미터와 바꾼 설정을 되돌리고 캐시에 돌려놓는다.
+     *  되돌릴 수 없는 설정을 바꿨거나 커넥션을 이미 반납했다면 그냥 닫는다.
+     */
+    private static class CachedStatementHandler implements InvocationHandler {
+
+        private final LeasedConnectionHandler lease;
+        private final Object connection;
+        private final String sql;
+        private final PreparedStatement statement;
+        private boolean closed;
+        private boolean reusable = true;
+        private Integer queryTimeout; // setQueryTimeout() 전의 값
+        private Integer maxRows;
+        private Integer fetchSize;
+
+        CachedStatementHandler(LeasedConnectionHandler lease, Object connection, String sql, PreparedStatement statement) {
+            this.lease = lease;
+            this.connection = connection;
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + statement + "]";
+                case "getConnection":
+                    return connection;
+                case "setQueryTimeout":
+                    if (queryTimeout == null) {
+                        queryTimeout = statement.getQueryTimeout();
+                    }
+                    break;
+                case "setMaxRows":
+                    if (maxRows == null) {
+                        maxRows = statement.getMaxRows();
+                    }
+                    break;
+                case "setFetchSize":
+                    if (fetchSize == null) {
+                        fetchSize = statement.getFetchSize();
+                    }
+                    break;
+                case "setCursorName":
+                case "setEscapeProcessing":
+                case "setFetchDirection":
+                case "setMaxFieldSize":
+                case "setLargeMaxRows":
+                case "setPoolable":
+                case "closeOnCompletion":
+                    reusable = false;
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("statement is closed");
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!reusable || lease.returned || !reset()) {
+                JdbcUtils.closeStatement(statement);
+                return;
+            }
+            lease.pooled.statements.put(sql, statement);
+        }
+
+        private boolean reset() {
+            try {
+                JdbcUtils.closeResultSet(statement.getResultSet());
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.clearWarnings();
+                if (queryTimeout != null) {
+                    statement.setQueryTimeout(queryTimeout);
+                }
+                if (maxRows != null) {
+                    statement.setMaxRows(maxRows);
+                }
+                if (fetchSize != null) {
+                    statement.setFetchSize(fetchSize);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+    }
+}
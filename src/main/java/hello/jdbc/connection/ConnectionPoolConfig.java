@@ -0,0 +1,40 @@
+package hello.jdbc.connection;
+
+import lombok.Data;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+/**
+ *  ConnectionPool 설정
+ *  기본값은 ConnectionConst 의 URL, USERNAME, PASSWORD 를 사용한다.
+ */
+@Data
+public class ConnectionPoolConfig {
+
+    private String poolName = "SimplePool";
+    private String url = URL;
+    private String username = USERNAME;
+    private String password = PASSWORD;
+
+    private int minSize = 2; // 유휴 커넥션을 최소 이만큼은 유지
+    private int maxSize = 10; // 풀이 만들 수 있는 최대 커넥션 수
+
+    private long acquireTimeoutMillis = 30_000; // 커넥션을 얻기 위해 기다리는 최대 시간
+    private long idleTimeoutMillis = 60_000; // 이 시간 이상 놀고 있는 커넥션은 minSize 초과분에 한해 정리
+    private long evictionIntervalMillis = 30_000; // 유휴 커넥션 정리 주기
+    private long validationThresholdMillis = 1_000; // 이 시간 이상 놀던 커넥션은 빌려주기 전에 isValid() 로 확인
+
+    private int statementCacheSize = 32; // 커넥션마다 캐시할 PreparedStatement 수, 0 이면 캐시하지 않는다.
+
+    public void validate() {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("invalid pool size min = " + minSize + ", max = " + maxSize);
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("invalid statement cache size " + statementCacheSize);
+        }
+        if (acquireTimeoutMillis < 0 || idleTimeoutMillis < 0 || evictionIntervalMillis <= 0) {
+            throw new IllegalArgumentException("invalid pool timeout configuration");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package hello.jdbc.connection;
+
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ *  커넥션 스코프 - 트랜잭션 없이 여러 번 호출하는 동안 커넥션 하나를 현재 스레드에 묶어 둔다.
+ *
+ *  트랜잭션 매니저처럼 TransactionSynchronizationManager 에 ConnectionHolder 를 등록하므로
+ *  DataSourceUtils.getConnection() 을 쓰는 MemberRepositoryV3 ~ V5(JdbcTemplate) 는 코드 수정 없이 같은 커넥션을 사용한다.
+ *  dataSource.getConnection() 을 직접 부르는 MemberRepositoryV1 은 TransactionAwareDataSourceProxy 로 감싸서 넘긴다.
+ *
+ *  - 스코프 안에서 시작한 트랜잭션도 이 커넥션을 사용하고, 끝나면 autoCommit 을 되돌린다.
+ *  - 이미 커넥션이 묶여 있으면(트랜잭션 안, 중첩 스코프) 그 커넥션을 그대로 사용한다.
+ *  - 스레드 로컬에 묶으므로 가상 스레드에서는 그 가상 스레드에만 묶인다.
+ */
+public final class ConnectionScope {
+
+    private ConnectionScope() {
+    }
+
+    public static <T> T call(DataSource dataSource, Supplier<T> work) {
+        if (TransactionSynchronizationManager.hasResource(dataSource)) {
+            return work.get();
+        }
+
+        Connection con;
+        try {
+            con = dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection", e);
+        }
+        ConnectionHolder holder = new ConnectionHolder(con);
+        TransactionSynchronizationManager.bindResource(dataSource, holder);
+        try {
+            return work.get();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(dataSource);
+            holder.clear();
+            JdbcUtils.closeConnection(con);
+        }
+    }
+
+    public static void run(DataSource dataSource, Runnable work) {
+        call(dataSource, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     *  현재 스레드에 dataSource 의 커넥션이 묶여 있는지 (스코프 또는 트랜잭션)
+     */
+    public static boolean isBound(DataSource dataSource) {
+        return TransactionSynchronizationManager.hasResource(dataSource);
+    }
+}
@@ -0,0 +1,154 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.repository.MemberSql;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ *  애플리케이션 시작 시 커넥션 풀 예열
+ *  풀의 최소 커넥션 수만큼 병렬로 커넥션을 열고, 검증 쿼리를 실행하고, 리포지토리 SQL 을 미리 준비(prepare)한다.
+ *  검증 쿼리가 실패하면 시작을 멈춘다. 리포지토리 SQL 은 준비하지 못해도(아직 스키마가 없는 등) 로그만 남기고 넘어간다.
+ *
+ *  ApplicationRunner 는 ApplicationReadyEvent 전에 실행되므로
+ *  예열이 끝나기 전에는 애플리케이션이 준비 완료(ReadinessState.ACCEPTING_TRAFFIC) 상태가 되지 않는다.
+ */
+@Slf4j
+public class ConnectionWarmUp implements ApplicationRunner {
+
+    static final String VALIDATION_QUERY = "select 1";
+
+    // MemberRepository 구현체들이 사용하는 SQL
+    static final List<String> REPOSITORY_SQL = MemberSql.ALL;
+
+    private final DataSource dataSource;
+    private final int connections;
+    private final Duration timeout;
+
+    public ConnectionWarmUp(DataSource dataSource, int connections, Duration timeout) {
+        this.dataSource = dataSource;
+        this.connections = connections;
+        this.timeout = timeout;
+    }
+
+    /**
+     *  풀 설정에서 최소 커넥션 수를 찾아 예열 개수로 사용한다.
+     */
+    public static ConnectionWarmUp forDataSource(DataSource dataSource, Duration timeout) {
+        return new ConnectionWarmUp(dataSource, minimumIdle(dataSource), timeout);
+    }
+
+    static int minimumIdle(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+                // 풀이 시작되기 전에는 설정하지 않은 값이 -1 이다. Hikari 기본값은 minimumIdle = maximumPoolSize = 10
+                if (hikari.getMinimumIdle() >= 0) {
+                    return hikari.getMinimumIdle();
+                }
+                return hikari.getMaximumPoolSize() > 0 ? hikari.getMaximumPoolSize() : 10;
+            }
+            if (dataSource.isWrapperFor(ConnectionPool.class)) {
+                return dataSource.unwrap(ConnectionPool.class).getConfig().getMinSize();
+            }
+        } catch (SQLException e) {
+            log.info("cannot inspect pool configuration", e);
+        }
+        return 1; // 풀 설정을 모르면 커넥션 하나로 SQL 준비만 한다.
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        warmUp();
+    }
+
+    public void warmUp() {
+        if (connections <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(connections, r -> {
+            Thread thread = new Thread(r, "connection-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // 예열한 커넥션은 모두 끝날 때까지 들고 있어야 서로 다른 물리 커넥션이 열린다.
+        List<CompletableFuture<Connection>> futures = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            futures.add(CompletableFuture.supplyAsync(this::openAndPrepare, executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            log.info("connection warm-up completed, connections = {}, elapsed = {}ms",
+                    connections, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("connection warm-up interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("connection warm-up failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("connection warm-up timed out after " + timeout.toMillis() + "ms", e);
+        } finally {
+            futures.forEach(future -> future.thenAccept(JdbcUtils::closeConnection)); // 풀에 반납
+            executor.shutdown();
+        }
+    }
+
+    private Connection openAndPrepare() {
+        Connection con = null;
+        try {
+            con = dataSource.getConnection();
+            validate(con);
+            for (String sql : REPOSITORY_SQL) {
+                prepare(con, sql);
+            }
+            return con;
+        } catch (SQLException e) {
+            JdbcUtils.closeConnection(con);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     *  prepare 만 해도 DB 세션에서 SQL 파싱, 실행 계획이 만들어진다.
+     *  준비하지 못한 SQL 은 처음 실행할 때 준비되므로 시작을 막지 않는다.
+     */
+    private void prepare(Connection con, String sql) {
+        PreparedStatement pstmt = null;
+        try {
+            pstmt = con.prepareStatement(sql);
+        } catch (SQLException e) {
+            log.warn("connection warm-up skipped sql = {}, cause = {}", sql, e.getMessage());
+        } finally {
+            JdbcUtils.closeStatement(pstmt);
+        }
+    }
+
+    private void validate(Connection con) throws SQLException {
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute(VALIDATION_QUERY);
+        } finally {
+            JdbcUtils.closeStatement(stmt);
+        }
+    }
+}
@@ -5,16 +5,25 @@ import lombok.extern.slf4j.Slf4j;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static hello.jdbc.connection.ConnectionConst.*;
 
 @Slf4j
 public class DBConnectionUtil {
 
+    // 풀링 모드일 때만 값이 있다. 없으면 매번 DriverManager 로 새 커넥션을 만든다.
+    private static volatile ConnectionPool pool;
+    // 풀 교체만 직렬화한다. synchronized 대신 사용해서 가상 스레드를 pinning 하지 않는다.
+    private static final ReentrantLock poolLock = new ReentrantLock();
+
     // jdbc 인터페이스가 제공하는 Connection 객체를 리턴
     public static Connection  getConnection() {
         try {
-            Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+            ConnectionPool current = pool;
+            Connection connection = current != null
+                    ? current.getConnection() // 풀링 모드 - close() 하면 풀에 반납된다.
+                    : DriverManager.getConnection(URL, USERNAME, PASSWORD);
             log.info("get connection = {}, class = {}", connection, connection.getClass());
             return connection;
         } catch (SQLException e) {
@@ -22,4 +31,41 @@ public class DBConnectionUtil {
             // checked exception 을 runtime exception 으로 변환해서 던져준다.
         }
     }
+
+    /**
+     *  풀링 모드로 전환
+     *  이미 풀링 모드라면 기존 풀을 닫고 새 설정으로 다시 만든다.
+     */
+    public static void enablePool(ConnectionPoolConfig config) {
+        poolLock.lock();
+        try {
+            ConnectionPool previous = pool;
+            pool = new ConnectionPool(config);
+            if (previous != null) {
+                previous.close();
+            }
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    /**
+     *  풀링 모드 해제 - 다시 호출할 때마다 새 커넥션을 만든다.
+     */
+    public static void disablePool() {
+        poolLock.lock();
+        try {
+            ConnectionPool previous = pool;
+            pool = null;
+            if (previous != null) {
+                previous.close();
+            }
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    public static boolean isPooled() {
+        return pool != null;
+    }
 }
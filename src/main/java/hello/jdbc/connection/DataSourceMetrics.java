@@ -0,0 +1,20 @@
+package hello.jdbc.connection;
+
+import lombok.Value;
+
+/**
+ *  MeteredDataSource 측정값 스냅샷
+ *  acquireTime - getConnection() 에서 기다린 시간
+ *  holdTime - 커넥션을 받은 뒤 close() 할 때까지 사용한 시간 (SQL 실행 시간)
+ */
+@Value
+public class DataSourceMetrics {
+    long acquireCount;
+    long acquireTimeouts;
+    long acquireFailures;
+    int inUse;
+    int idle; // 풀 정보를 알 수 없으면 -1
+    int waiting;
+    LatencyHistogram.Snapshot acquireTime;
+    LatencyHistogram.Snapshot holdTime;
+}
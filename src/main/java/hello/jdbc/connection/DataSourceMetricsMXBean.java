@@ -0,0 +1,32 @@
+package hello.jdbc.connection;
+
+/**
+ *  MeteredDataSource 의 JMX 노출 항목
+ *  시간 단위는 모두 마이크로초(us)
+ */
+public interface DataSourceMetricsMXBean {
+
+    long getAcquireCount();
+
+    long getAcquireTimeouts();
+
+    long getAcquireFailures();
+
+    int getInUse();
+
+    int getIdle();
+
+    int getWaiting();
+
+    double getAcquireTimeMeanMicros();
+
+    long getAcquireTimeP99Micros();
+
+    long getAcquireTimeMaxMicros();
+
+    double getHoldTimeMeanMicros();
+
+    long getHoldTimeP99Micros();
+
+    long getHoldTimeMaxMicros();
+}
@@ -0,0 +1,85 @@
+package hello.jdbc.connection;
+
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ *  현재 스레드의 작업 마감 시각
+ *  within() 안에서 실행되는 커넥션 획득과 SQL 은 남은 시간만큼만 기다린다.
+ *
+ *  - ConnectionPool 은 acquireTimeoutMillis 와 남은 시간 중 짧은 쪽만 기다린다.
+ *  - DeadlineDataSource 는 다른 풀(Hikari 등)의 커넥션 대기도 남은 시간으로 자르고,
+ *    남은 시간을 Statement.setQueryTimeout() 으로 넘기고, 이미 지났으면 DB 에 가지 않고 실패한다.
+ *  within() 을 겹쳐 쓰면 더 이른 마감 시각을 따른다.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Long> deadlineNanos = new ThreadLocal<>();
+
+    private Deadline() {
+    }
+
+    public static <T> T within(Duration budget, Supplier<T> task) {
+        Long previous = deadlineNanos.get();
+        long deadline = System.nanoTime() + budget.toNanos();
+        if (previous != null && previous - deadline < 0) {
+            deadline = previous;
+        }
+        deadlineNanos.set(deadline);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                deadlineNanos.remove();
+            } else {
+                deadlineNanos.set(previous);
+            }
+        }
+    }
+
+    public static void within(Duration budget, Runnable task) {
+        within(budget, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public static boolean isSet() {
+        return deadlineNanos.get() != null;
+    }
+
+    /**
+     *  남은 시간(나노초), 마감 시각이 없으면 Long.MAX_VALUE, 지났으면 0 이하
+     */
+    public static long remainingNanos() {
+        Long deadline = deadlineNanos.get();
+        return deadline == null ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+
+    public static boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    /**
+     *  마감 시각이 지났으면 SQLTimeoutException
+     */
+    public static void check(String task) throws SQLTimeoutException {
+        long remaining = remainingNanos();
+        if (remaining <= 0) {
+            throw new SQLTimeoutException("deadline exceeded by " + TimeUnit.NANOSECONDS.toMillis(-remaining) + "ms before " + task);
+        }
+    }
+
+    /**
+     *  Statement.setQueryTimeout() 에 넘길 남은 시간(초, 올림), 마감 시각이 없으면 0
+     */
+    static int remainingQueryTimeoutSeconds() {
+        long remaining = remainingNanos();
+        if (remaining == Long.MAX_VALUE) {
+            return 0;
+        }
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (remaining + 999_999_999L) / 1_000_000_000L));
+    }
+}
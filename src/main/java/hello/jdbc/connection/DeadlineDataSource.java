@@ -0,0 +1,217 @@
+package hello.jdbc.connection;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ *  Deadline 을 JDBC 까지 전달하는 DataSource
+ *
+ *  - 커넥션 획득 전 마감 시각이 지났으면 바로 SQLTimeoutException, 획득하는 동안 지났으면 커넥션을 돌려주고 실패한다.
+ *  - 커넥션 대기도 남은 시간까지만 한다. ConnectionPool 은 스스로 남은 시간만큼만 기다리므로 그대로 호출하고,
+ *    Hikari 같은 다른 풀은 별도 스레드에서 커넥션을 가져오면서 남은 시간만큼만 기다린다.
+ *    늦게 도착한 커넥션은 바로 반납한다.
+ *  - 별도 스레드는 maxAcquirers 개까지만 만들고, 대기열도 maxAcquirers 개까지만 받는다.
+ *    풀이 고갈되어 둘 다 차면 스레드를 더 만들지 않고 바로 SQLException 으로 거절한다. maxAcquirers 는 감싼 풀의 최대 크기로 준다.
+ *  - 이 커넥션으로 만든 Statement 는 execute 할 때마다 남은 시간을 setQueryTimeout() 으로 건다.
+ *    JdbcTemplate, 트랜잭션 타임아웃이 건 값이 더 짧으면 그대로 둔다.
+ *  - 마감 시각이 지난 뒤의 execute 는 DB 에 보내지 않고 SQLTimeoutException 을 던진다.
+ *  Deadline.within() 밖에서는 아무것도 하지 않는다.
+ *  close() 는 커넥션을 가져오는 스레드를 정리한다. 감싼 DataSource 는 닫지 않는다.
+ */
+public class DeadlineDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_ACQUIRERS = 10; // HikariCP 의 기본 maximumPoolSize
+
+    // 마감 시각이 있을 때 ConnectionPool 이 아닌 풀에서 커넥션을 가져오는 스레드
+    private final ThreadPoolExecutor acquirer;
+
+    public DeadlineDataSource(DataSource targetDataSource) {
+        this(targetDataSource, DEFAULT_MAX_ACQUIRERS);
+    }
+
+    public DeadlineDataSource(DataSource targetDataSource, int maxAcquirers) {
+        super(targetDataSource);
+        if (maxAcquirers < 1) {
+            throw new IllegalArgumentException("maxAcquirers must be positive, maxAcquirers = " + maxAcquirers);
+        }
+        this.acquirer = new ThreadPoolExecutor(maxAcquirers, maxAcquirers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxAcquirers), r -> {
+            Thread thread = new Thread(r, "deadline-acquire");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acquirer.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Deadline.check("getConnection");
+        Connection con = acquire(obtainTargetDataSource());
+        if (Deadline.isExpired()) {
+            JdbcUtils.closeConnection(con);
+            Deadline.check("getConnection");
+        }
+        return (Connection) Proxy.newProxyInstance(DeadlineDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new DeadlineConnectionHandler(con));
+    }
+
+    private Connection acquire(DataSource target) throws SQLException {
+        long remaining = Deadline.remainingNanos();
+        if (remaining == Long.MAX_VALUE || target.isWrapperFor(ConnectionPool.class)) {
+            return target.getConnection();
+        }
+        // 대기열에 있는 동안 호출한 쪽이 포기했으면 커넥션을 가져오지 않는다.
+        AtomicBoolean abandoned = new AtomicBoolean();
+        CompletableFuture<Connection> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> {
+                if (abandoned.get()) {
+                    return null;
+                }
+                try {
+                    return target.getConnection();
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, acquirer);
+        } catch (RejectedExecutionException e) {
+            if (acquirer.isShutdown()) {
+                throw new SQLException("DeadlineDataSource is closed", e);
+            }
+            throw new SQLException("too many callers waiting for a connection, maxAcquirers = " + acquirer.getMaximumPoolSize(), e);
+        }
+        try {
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            abandoned.set(true);
+            future.thenAccept(JdbcUtils::closeConnection);
+            throw new SQLTimeoutException("deadline exceeded while waiting for a connection");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandoned.set(true);
+            future.thenAccept(JdbcUtils::closeConnection);
+            throw new SQLException("interrupted while waiting for a connection", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     *  새로 커넥션을 가져오지 않는다. 이미 기다리고 있는 커넥션은 받아서 늦었으면 반납한다.
+     */
+    @Override
+    public void close() {
+        acquirer.shutdown();
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static class DeadlineConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        DeadlineConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Deadline[" + target + "]";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+            }
+            Object result = invokeTarget(target, method, args);
+            if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                // Statement, PreparedStatement, CallableStatement 중 메서드가 돌려주는 타입으로 감싼다.
+                return Proxy.newProxyInstance(DeadlineDataSource.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()}, new DeadlineStatementHandler((Statement) result, proxy));
+            }
+            return result;
+        }
+    }
+
+    private static class DeadlineStatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final Object connection;
+        private int queryTimeout; // 호출한 쪽이 건 값
+
+        DeadlineStatementHandler(Statement target, Object connection) {
+            this.target = target;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Deadline[" + target + "]";
+                case "getConnection":
+                    return connection;
+                case "setQueryTimeout":
+                    queryTimeout = (Integer) args[0];
+                    break;
+            }
+            if (method.getName().startsWith("execute")) {
+                Deadline.check(method.getName());
+                int remaining = Deadline.remainingQueryTimeoutSeconds();
+                int timeout = remaining == 0 ? queryTimeout
+                        : queryTimeout == 0 ? remaining : Math.min(queryTimeout, remaining);
+                if (timeout != target.getQueryTimeout()) {
+                    target.setQueryTimeout(timeout);
+                }
+            }
+            return invokeTarget(target, method, args);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package hello.jdbc.connection;
+
+import lombok.Value;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  지연 시간 히스토그램
+ *  마이크로초 단위로 2의 거듭제곱 구간에 기록한다. (0~1us, 1~2us, 2~4us ... 약 35분까지)
+ *  여러 스레드가 동시에 기록해도 락을 잡지 않는다.
+ */
+public class LatencyHistogram {
+
+    static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        buckets.incrementAndGet(bucketOf(micros));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    static int bucketOf(long micros) {
+        // 0us -> 0, 1us -> 1, 2~3us -> 2, 4~7us -> 3 ...
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     *  구간의 상한값(us)
+     */
+    static long upperBoundMicros(int bucket) {
+        return bucket == 0 ? 0 : (1L << bucket) - 1;
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(count.sum(), totalMicros.sum(), maxMicros.get(), counts);
+    }
+
+    @Value
+    public static class Snapshot {
+        long count;
+        long totalMicros;
+        long maxMicros;
+        long[] bucketCounts;
+
+        public double getMeanMicros() {
+            return count == 0 ? 0 : (double) totalMicros / count;
+        }
+
+        public long getP50Micros() {
+            return percentileMicros(0.50);
+        }
+
+        public long getP99Micros() {
+            return percentileMicros(0.99);
+        }
+
+        /**
+         *  해당 백분위가 속한 구간의 상한값을 돌려준다. 최대값보다 크게 나오지는 않는다.
+         */
+        public long percentileMicros(double percentile) {
+            long total = 0;
+            for (long bucketCount : bucketCounts) {
+                total += bucketCount;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile * total);
+            long seen = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundMicros(i), maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+    }
+}
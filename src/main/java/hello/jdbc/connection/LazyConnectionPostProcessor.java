@@ -0,0 +1,29 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ *  DataSource 빈을 LazyConnectionDataSourceProxy 로 감싼다.
+ *
+ *  @Transactional 에 들어가면 트랜잭션 매니저가 바로 커넥션을 가져가는데, 감싸면 실제 커넥션은 첫 SQL 을 실행할 때 가져온다.
+ *  그 전의 setAutoCommit(false), commit(), rollback() 은 기억만 하므로
+ *  SQL 을 실행하기 전에 자바 코드에서 실패하거나 SQL 없이 끝난 트랜잭션은 커넥션을 얻지도, begin/commit 하지도 않는다.
+ *
+ *  트랜잭션 매니저, 리포지토리 모두 같은 DataSource 빈을 주입받아야 하므로 빈 후처리기로 감싼다.
+ */
+@Slf4j
+public class LazyConnectionPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof LazyConnectionDataSourceProxy)) {
+            log.info("lazy connection for data source {}", beanName);
+            return new LazyConnectionDataSourceProxy(dataSource);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,197 @@
+package hello.jdbc.connection;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ *  커넥션 누수 감지 DataSource
+ *  빌려준 커넥션을 모두 추적하고, leakThreshold 보다 오래 반납되지 않은 커넥션을 경고 로그로 남긴다.
+ *
+ *  커넥션을 가져간 위치(스택 트레이스)는 비용이 크므로 sampleRate 비율만큼만 기록한다.
+ *  기록하지 않은 커넥션은 가져간 스레드 이름만 남긴다.
+ */
+@Slf4j
+public class LeakDetectingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private final long leakThresholdNanos;
+    private final double sampleRate;
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final LongAdder leakCount = new LongAdder();
+    private final ScheduledExecutorService detector;
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param leakThresholdMillis 이 시간보다 오래 들고 있으면 누수로 의심
+     * @param sampleRate 스택 트레이스를 기록할 비율 (0.0 ~ 1.0)
+     * @param checkIntervalMillis 누수 검사 주기, 0 이면 detectLeaks() 를 직접 호출해야 한다.
+     */
+    public LeakDetectingDataSource(DataSource targetDataSource, long leakThresholdMillis, double sampleRate, long checkIntervalMillis) {
+        this(targetDataSource, leakThresholdMillis, sampleRate, checkIntervalMillis, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock 들고 있던 시간을 잴 시계, 테스트에서 시간을 직접 움직일 때 바꾼다.
+     */
+    LeakDetectingDataSource(DataSource targetDataSource, long leakThresholdMillis, double sampleRate, long checkIntervalMillis,
+                            LongSupplier nanoClock) {
+        super(targetDataSource);
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1, sampleRate = " + sampleRate);
+        }
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+        this.sampleRate = sampleRate;
+        this.nanoClock = nanoClock;
+        if (checkIntervalMillis > 0) {
+            detector = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "connection-leak-detector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            detector.scheduleWithFixedDelay(this::detectLeaks, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            detector = null;
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection con = obtainTargetDataSource().getConnection();
+        // 샘플링된 경우에만 스택 트레이스를 만든다.
+        Throwable acquiredAt = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate
+                ? new Throwable("connection acquired here")
+                : null;
+        Lease lease = new Lease(con, Thread.currentThread().getName(), nanoClock.getAsLong(), acquiredAt);
+        leases.add(lease);
+        return (Connection) Proxy.newProxyInstance(LeakDetectingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new TrackedConnectionHandler(con, lease));
+    }
+
+    /**
+     *  threshold 를 넘긴 커넥션을 찾아 경고 로그를 남긴다. 한 커넥션은 한 번만 보고한다.
+     * @return 이번 검사에서 새로 찾은 누수 의심 커넥션
+     */
+    public List<LeakReport> detectLeaks() {
+        long now = nanoClock.getAsLong();
+        List<LeakReport> found = new ArrayList<>();
+        for (Lease lease : leases) {
+            long held = now - lease.acquiredNanos;
+            if (held < leakThresholdNanos || lease.reported) {
+                continue;
+            }
+            lease.reported = true;
+            leakCount.increment();
+            LeakReport report = new LeakReport(lease.connection.toString(), lease.threadName,
+                    TimeUnit.NANOSECONDS.toMillis(held), lease.acquiredAt);
+            found.add(report);
+            if (lease.acquiredAt != null) {
+                log.warn("connection leak detection - {} held for {}ms by thread {}",
+                        lease.connection, report.getHeldMillis(), lease.threadName, lease.acquiredAt);
+            } else {
+                log.warn("connection leak detection - {} held for {}ms by thread {} (acquire site not sampled)",
+                        lease.connection, report.getHeldMillis(), lease.threadName);
+            }
+        }
+        return found;
+    }
+
+    /**
+     *  아직 반납되지 않은 커넥션 수
+     */
+    public int getOutstanding() {
+        return leases.size();
+    }
+
+    /**
+     *  지금까지 누수로 의심한 커넥션 수
+     */
+    public long getLeakCount() {
+        return leakCount.sum();
+    }
+
+    @Override
+    public void close() {
+        if (detector != null) {
+            detector.shutdownNow();
+        }
+    }
+
+    @Value
+    public static class LeakReport {
+        String connection;
+        String threadName;
+        long heldMillis;
+        Throwable acquiredAt; // 샘플링되지 않았으면 null
+    }
+
+    private static class Lease {
+        // toString() 은 드라이버에 따라 비싸므로 누수를 보고할 때만 호출한다.
+        private final Connection connection;
+        private final String threadName;
+        private final long acquiredNanos;
+        private final Throwable acquiredAt;
+        private volatile boolean reported;
+
+        Lease(Connection connection, String threadName, long acquiredNanos, Throwable acquiredAt) {
+            this.connection = connection;
+            this.threadName = threadName;
+            this.acquiredNanos = acquiredNanos;
+            this.acquiredAt = acquiredAt;
+        }
+    }
+
+    private class TrackedConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final Lease lease;
+
+        TrackedConnectionHandler(Connection target, Lease lease) {
+            this.target = target;
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (leases.remove(lease) && lease.reported) {
+                        log.info("previously reported leaked connection {} was returned after {}ms", lease.connection,
+                                TimeUnit.NANOSECONDS.toMillis(nanoClock.getAsLong() - lease.acquiredNanos));
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Tracked[" + target + "]";
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            // statement.getConnection() 을 닫아도 close() 를 거쳐서 추적이 끝나게 한다.
+            return StatementProxy.wrap(proxy, method, result);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  커넥션 획득 시간 측정 DataSource
+ *  DataSourceUtils.getConnection(dataSource) 에 그대로 넘길 수 있도록 DataSource 를 감싼다.
+ *
+ *  - 커넥션을 얻기까지 기다린 시간(acquireTime)과 커넥션을 들고 있던 시간(holdTime)을 히스토그램으로 기록
+ *  - 사용 중/유휴 커넥션 수, 대기 중인 스레드 수, 타임아웃 횟수
+ *  snapshot() 으로 조회하거나 registerMBean() 으로 JMX 에 노출한다.
+ */
+@Slf4j
+public class MeteredDataSource extends DelegatingDataSource implements DataSourceMetricsMXBean {
+
+    private final LatencyHistogram acquireTime = new LatencyHistogram();
+    private final LatencyHistogram holdTime = new LatencyHistogram();
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireTimeouts = new LongAdder();
+    private final LongAdder acquireFailures = new LongAdder();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private ObjectName objectName;
+
+    public MeteredDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        waiting.incrementAndGet();
+        long start = System.nanoTime();
+        Connection con;
+        try {
+            con = obtainTargetDataSource().getConnection();
+        } catch (SQLException e) {
+            // HikariCP 는 타임아웃에 SQLTransientConnectionException 을 던진다.
+            if (e instanceof SQLTimeoutException || e instanceof SQLTransientConnectionException) {
+                acquireTimeouts.increment();
+            } else {
+                acquireFailures.increment();
+            }
+            throw e;
+        } finally {
+            waiting.decrementAndGet();
+        }
+        long acquired = System.nanoTime();
+        acquireTime.record(acquired - start);
+        acquireCount.increment();
+        inUse.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(MeteredDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new MeteredConnectionHandler(con, acquired));
+    }
+
+    public DataSourceMetrics snapshot() {
+        return new DataSourceMetrics(acquireCount.sum(), acquireTimeouts.sum(), acquireFailures.sum(),
+                inUse.get(), getIdle(), waiting.get(), acquireTime.snapshot(), holdTime.snapshot());
+    }
+
+    /**
+     *  JMX 등록 - hello.jdbc:type=DataSourceMetrics,name={name}
+     */
+    public void registerMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("hello.jdbc:type=DataSourceMetrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register metrics mbean, name = " + name, e);
+        }
+    }
+
+    public void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            log.info("cannot unregister metrics mbean {}", objectName, e);
+        }
+        objectName = null;
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    @Override
+    public long getAcquireTimeouts() {
+        return acquireTimeouts.sum();
+    }
+
+    @Override
+    public long getAcquireFailures() {
+        return acquireFailures.sum();
+    }
+
+    @Override
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     *  유휴 커넥션 수는 풀만 알고 있다. HikariCP, ConnectionPool 이 아니면 -1
+     */
+    @Override
+    public int getIdle() {
+        try {
+            DataSource target = obtainTargetDataSource();
+            if (target.isWrapperFor(HikariDataSource.class)) {
+                HikariPoolMXBean pool = target.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+                return pool == null ? 0 : pool.getIdleConnections(); // 첫 커넥션 요청 전에는 풀이 없다.
+            }
+            if (target.isWrapperFor(ConnectionPool.class)) {
+                return target.unwrap(ConnectionPool.class).getIdleConnections();
+            }
+        } catch (SQLException e) {
+            log.debug("cannot inspect idle connections", e);
+        }
+        return -1;
+    }
+
+    @Override
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    @Override
+    public double getAcquireTimeMeanMicros() {
+        return acquireTime.snapshot().getMeanMicros();
+    }
+
+    @Override
+    public long getAcquireTimeP99Micros() {
+        return acquireTime.snapshot().getP99Micros();
+    }
+
+    @Override
+    public long getAcquireTimeMaxMicros() {
+        return acquireTime.snapshot().getMaxMicros();
+    }
+
+    @Override
+    public double getHoldTimeMeanMicros() {
+        return holdTime.snapshot().getMeanMicros();
+    }
+
+    @Override
+    public long getHoldTimeP99Micros() {
+        return holdTime.snapshot().getP99Micros();
+    }
+
+    @Override
+    public long getHoldTimeMaxMicros() {
+        return holdTime.snapshot().getMaxMicros();
+    }
+
+    /**
+     *  close() 될 때 사용 시간을 기록한다. 나머지 호출은 그대로 넘긴다. (Statement 는 StatementProxy 로 감싼다.)
+     */
+    private class MeteredConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final long acquiredNanos;
+        private boolean closed;
+
+        MeteredConnectionHandler(Connection target, long acquiredNanos) {
+            this.target = target;
+            this.acquiredNanos = acquiredNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        holdTime.record(System.nanoTime() - acquiredNanos);
+                        inUse.decrementAndGet();
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Metered[" + target + "]";
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            // statement.getConnection() 을 닫아도 close() 를 거쳐서 사용 시간이 기록되게 한다.
+            return StatementProxy.wrap(proxy, method, result);
+        }
+    }
+}
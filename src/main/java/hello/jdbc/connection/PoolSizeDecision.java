@@ -0,0 +1,23 @@
+package hello.jdbc.connection;
+
+import lombok.Value;
+
+/**
+ *  AdaptivePoolSizer 가 한 번 조정할 때 사용한 측정값과 결정
+ *  targetConcurrency = arrivalRate * holdTime (Little's law, 평균적으로 동시에 사용 중인 커넥션 수)
+ */
+@Value
+public class PoolSizeDecision {
+    long timestampMillis;
+    double arrivalRatePerSecond;
+    double holdTimeMillis;
+    double acquireWaitMillis;
+    long timeouts;
+    double targetConcurrency;
+    int previousSize;
+    int newSize;
+
+    public boolean isResized() {
+        return previousSize != newSize;
+    }
+}
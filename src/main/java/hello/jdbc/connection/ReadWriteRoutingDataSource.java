@@ -0,0 +1,317 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ *  읽기/쓰기 분리 DataSource
+ *  getConnection() 은 실제 커넥션을 바로 가져오지 않고, 첫 SQL 을 보고 어디로 보낼지 정한다.
+ *
+ *  - select 로 시작하는 SQL 은 replica 중 하나로 보낸다. (ROUND_ROBIN 또는 LEAST_OUTSTANDING)
+ *    단, 행에 락을 거는 select ... for update / for share 는 쓰기로 보고 primary 로 보낸다.
+ *  - 그 밖의 SQL, setAutoCommit(false) 로 시작한 트랜잭션(DataSourceTransactionManager), 스프링 트랜잭션 안의 요청은 primary 로 보낸다.
+ *  - readYourWritesWindow 를 주면 primary 에 쓴 스레드는 그 시간 동안 읽기도 primary 에서 한다. (복제 지연 대비)
+ *  - replica 에서 읽다가 쓰기나 트랜잭션이 시작되면 primary 커넥션을 연다.
+ *    replica 에서 연 statement 가 남아 있으면 그 ResultSet 을 계속 읽을 수 있도록 statement 가 모두 닫힐 때까지 replica 커넥션을 같이 들고 있는다.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    public enum ReplicaSelection {
+        ROUND_ROBIN, LEAST_OUTSTANDING
+    }
+
+    // select ... for update, for no key update, for share, for key share
+    private static final Pattern LOCKING_CLAUSE = Pattern.compile(
+            "\\bfor\\s+(update|share|no\\s+key\\s+update|key\\s+share)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final ReplicaSelection selection;
+    private final long readYourWritesNanos;
+
+    private final AtomicInteger[] outstanding; // replica 별 사용 중인 커넥션 수
+    private final AtomicLong next = new AtomicLong();
+    // 이 스레드가 primary 에 마지막으로 쓴 뒤 primary 에 고정되는 시각(nanoTime)
+    private final ThreadLocal<Long> pinnedToPrimaryUntil = new ThreadLocal<>();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas,
+                                      ReplicaSelection selection, Duration readYourWritesWindow) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.selection = selection;
+        this.readYourWritesNanos = readYourWritesWindow.toNanos();
+        this.outstanding = new AtomicInteger[replicas.size()];
+        for (int i = 0; i < outstanding.length; i++) {
+            outstanding[i] = new AtomicInteger();
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return (Connection) Proxy.newProxyInstance(ReadWriteRoutingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new RoutingConnectionHandler());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("ReadWriteRoutingDataSource 는 primary, replica 의 계정을 사용한다.");
+    }
+
+    public int getOutstanding(int replicaIndex) {
+        return outstanding[replicaIndex].get();
+    }
+
+    static boolean isRead(String sql) {
+        String trimmed = sql.stripLeading();
+        return trimmed.regionMatches(true, 0, "select", 0, 6) && !LOCKING_CLAUSE.matcher(trimmed).find();
+    }
+
+    private boolean canUseReplica() {
+        if (replicas.isEmpty() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        Long until = pinnedToPrimaryUntil.get();
+        if (until == null) {
+            return true;
+        }
+        if (System.nanoTime() - until > 0) {
+            pinnedToPrimaryUntil.remove(); // 기한이 지나면 스레드 풀의 스레드에 남겨두지 않는다.
+            return true;
+        }
+        return false;
+    }
+
+    private int chooseReplica() {
+        if (selection == ReplicaSelection.ROUND_ROBIN) {
+            return (int) (next.getAndIncrement() % replicas.size());
+        }
+        // 사용 중인 커넥션이 가장 적은 replica, 같으면 돌아가면서
+        int start = (int) (next.getAndIncrement() % replicas.size());
+        int best = start;
+        for (int i = 1; i < replicas.size(); i++) {
+            int candidate = (start + i) % replicas.size();
+            if (outstanding[candidate].get() < outstanding[best].get()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     *  실제 커넥션은 처음 SQL 을 실행하려 할 때 가져온다.
+     *  그 전에 호출된 autoCommit, readOnly 설정은 기억해 두었다가 커넥션을 가져오면 적용한다.
+     */
+    private class RoutingConnectionHandler implements InvocationHandler {
+
+        private static final int PRIMARY = -1;
+
+        private Connection target;
+        private int targetIndex = PRIMARY;
+        // primary 로 옮긴 뒤에도 열린 statement 가 남아 있어서 닫지 못한 replica 커넥션
+        private Connection retiredReplica;
+        private int retiredIndex;
+        private final List<Statement> replicaStatements = new ArrayList<>();
+        private boolean wrote;
+        private boolean closed;
+        private boolean autoCommit = true;
+        private boolean readOnly;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Routing[" + (target == null ? "not resolved" : target) + "]";
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return closed;
+            }
+            if (closed) {
+                throw new SQLException("connection is closed");
+            }
+            releaseRetiredReplicaIfIdle();
+
+            if (target != null && targetIndex != PRIMARY
+                    && method.getName().equals("setAutoCommit") && !(Boolean) args[0]) {
+                leaveReplica(); // replica 에서 읽다가 트랜잭션을 시작하면 primary 로 옮긴다.
+            }
+            if (target == null) {
+                switch (method.getName()) {
+                    case "getAutoCommit":
+                        return autoCommit;
+                    case "setAutoCommit":
+                        autoCommit = (Boolean) args[0];
+                        return null;
+                    case "isReadOnly":
+                        return readOnly;
+                    case "setReadOnly":
+                        readOnly = (Boolean) args[0];
+                        return null;
+                    case "commit":
+                    case "rollback":
+                        return null; // 아직 아무 SQL 도 실행하지 않았다.
+                }
+            }
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            boolean statement = method.getName().startsWith("prepare") || method.getName().equals("createStatement");
+            if (statement && sql != null && isRead(sql)) {
+                resolveForRead();
+            } else if (statement) {
+                resolvePrimary(true); // SQL 을 알 수 없는 createStatement() 도 쓰기로 본다.
+            } else if (target == null) {
+                resolvePrimary(false);
+            }
+
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            if (targetIndex != PRIMARY && result instanceof Statement) {
+                replicaStatements.add((Statement) result);
+            }
+            // statement.getConnection() 을 닫아도 close() 를 거쳐서 replica 의 사용 중 커넥션 수가 줄게 한다.
+            return StatementProxy.wrap(proxy, method, result);
+        }
+
+        private void resolveForRead() throws SQLException {
+            if (target != null) {
+                return;
+            }
+            // 트랜잭션(autoCommit false) 안의 읽기는 primary
+            if (autoCommit && canUseReplica()) {
+                int index = chooseReplica();
+                outstanding[index].incrementAndGet();
+                try {
+                    open(replicas.get(index), index);
+                } catch (SQLException | RuntimeException e) {
+                    outstanding[index].decrementAndGet();
+                    throw e;
+                }
+                return;
+            }
+            resolvePrimary(false);
+        }
+
+        private void resolvePrimary(boolean write) throws SQLException {
+            wrote |= write;
+            if (target != null && targetIndex == PRIMARY) {
+                return;
+            }
+            if (target != null) {
+                // replica 에서 읽다가 쓰기가 들어왔다. autoCommit 읽기만 했으므로 primary 로 옮겨도 된다.
+                leaveReplica();
+            }
+            open(primary, PRIMARY);
+        }
+
+        private void open(DataSource dataSource, int index) throws SQLException {
+            Connection con = dataSource.getConnection();
+            try {
+                if (con.getAutoCommit() != autoCommit) {
+                    con.setAutoCommit(autoCommit);
+                }
+                if (readOnly) {
+                    con.setReadOnly(true);
+                }
+            } catch (SQLException e) {
+                JdbcUtils.closeConnection(con);
+                throw e;
+            }
+            target = con;
+            targetIndex = index;
+        }
+
+        /**
+         *  replica 커넥션에서 떠난다. 열린 statement 가 있으면 닫으면 ResultSet 도 같이 닫히므로 닫지 않고 남겨 둔다.
+         */
+        private void leaveReplica() throws SQLException {
+            if (hasOpenReplicaStatement()) {
+                retiredReplica = target;
+                retiredIndex = targetIndex;
+                target = null;
+                targetIndex = PRIMARY;
+                return;
+            }
+            replicaStatements.clear();
+            releaseTarget();
+        }
+
+        private boolean hasOpenReplicaStatement() throws SQLException {
+            for (Statement statement : replicaStatements) {
+                if (!statement.isClosed()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void releaseRetiredReplicaIfIdle() throws SQLException {
+            if (retiredReplica != null && !hasOpenReplicaStatement()) {
+                releaseRetiredReplica();
+            }
+        }
+
+        private void releaseRetiredReplica() {
+            release(retiredReplica, retiredIndex);
+            retiredReplica = null;
+            replicaStatements.clear();
+        }
+
+        private void releaseTarget() {
+            release(target, targetIndex);
+            target = null;
+            targetIndex = PRIMARY;
+        }
+
+        private void release(Connection con, int index) {
+            if (index != PRIMARY) {
+                outstanding[index].decrementAndGet();
+            }
+            JdbcUtils.closeConnection(con);
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (retiredReplica != null) {
+                releaseRetiredReplica();
+            }
+            if (target == null) {
+                return;
+            }
+            if (targetIndex == PRIMARY && (wrote || !autoCommit) && readYourWritesNanos > 0) {
+                pinnedToPrimaryUntil.set(System.nanoTime() + readYourWritesNanos);
+            }
+            releaseTarget();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.repository.ex.MyDbUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ *  DB 가 멈췄을 때 요청 스레드가 모두 커넥션 대기에 묶이지 않도록 막아주는 DataSource
+ *  DataSourceUtils.getConnection() 에 그대로 넘길 수 있으므로 MemberRepositoryV4_2, V5 는 코드 수정 없이 사용한다.
+ *
+ *  - bulkhead: 동시에 빌려줄 수 있는 커넥션 수를 maxConcurrent 로 제한한다. 차면 bulkheadWaitMillis 만 기다린다.
+ *  - 서킷 브레이커: 최근 windowSize 번의 커넥션 획득, SQL 실행 중 DB 장애로 보이는 실패(연결 오류, 타임아웃)의 비율이
+ *    failureRateThreshold 이상이면 열고, openDurationMillis 동안 DB 에 가지 않는다.
+ *    키 중복 같은 SQL 오류는 DB 가 응답한 것이므로 실패로 세지 않는다.
+ *    커넥션 획득은 연결 오류만 실패로 센다. 풀 대기 타임아웃은 DB 가 아니라 이 애플리케이션이 바쁜 것이므로 세지 않는다. (bulkhead 가 막을 일이다.)
+ *  - half-open: 요청의 일부만 단계적으로 통과시키며(1/rampSteps, 2/rampSteps ...) 단계마다 probesPerStep 개의 요청이 성공하면 늘린다.
+ *    한 번이라도 실패하면 다시 연다.
+ *  서킷이 열려 있거나 bulkhead 가 차면 MyDbUnavailableException 으로 바로 실패한다.
+ *
+ *  상태 변경은 ReentrantLock 으로 보호한다. (가상 스레드 pinning 을 피하려고 synchronized 를 쓰지 않는다.)
+ */
+@Slf4j
+public class ResilientDataSource extends DelegatingDataSource {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final ResilientDataSourceConfig config;
+    private final LongSupplier nanoClock;
+    private final Semaphore bulkhead;
+    private final LongAdder rejected = new LongAdder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // 최근 호출 결과 (true = 실패), 원형 버퍼
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private volatile State state = State.CLOSED;
+    private long openedAtNanos;
+    private int rampStep;
+    private int stepSuccesses;
+    private long halfOpenRequests;
+
+    public ResilientDataSource(DataSource targetDataSource, ResilientDataSourceConfig config) {
+        this(targetDataSource, config, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock 열린 시간을 잴 시계, 테스트에서 시간을 직접 움직일 때 바꾼다.
+     */
+    ResilientDataSource(DataSource targetDataSource, ResilientDataSourceConfig config, LongSupplier nanoClock) {
+        super(targetDataSource);
+        config.validate();
+        this.config = config;
+        this.nanoClock = nanoClock;
+        this.bulkhead = new Semaphore(config.getMaxConcurrent(), true);
+        this.window = new boolean[config.getWindowSize()];
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        admit();
+        acquireBulkhead();
+        Connection con;
+        try {
+            con = obtainTargetDataSource().getConnection();
+        } catch (SQLException e) {
+            bulkhead.release();
+            if (isConnectionFailure(e)) {
+                record(false, true);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+        record(true, true);
+        return (Connection) Proxy.newProxyInstance(ResilientDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ResilientConnectionHandler(con));
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            transitionToHalfOpenIfDue();
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     *  최근 호출 중 실패 비율
+     */
+    public double getFailureRate() {
+        lock.lock();
+        try {
+            return windowCount == 0 ? 0 : (double) windowFailures / windowCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public int getAvailableConcurrency() {
+        return bulkhead.availablePermits();
+    }
+
+    private void admit() {
+        lock.lock();
+        try {
+            transitionToHalfOpenIfDue();
+            if (state == State.OPEN) {
+                reject("circuit breaker is open");
+            }
+            if (state == State.HALF_OPEN && halfOpenRequests++ % config.getRampSteps() >= rampStep) {
+                reject("circuit breaker is half-open, admitting " + rampStep + "/" + config.getRampSteps() + " of requests");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquireBulkhead() {
+        try {
+            if (!bulkhead.tryAcquire(config.getBulkheadWaitMillis(), TimeUnit.MILLISECONDS)) {
+                reject("bulkhead is full, maxConcurrent = " + config.getMaxConcurrent());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MyDbUnavailableException("interrupted while waiting for bulkhead", e);
+        }
+    }
+
+    private void reject(String reason) {
+        rejected.increment();
+        throw new MyDbUnavailableException(reason);
+    }
+
+    private void transitionToHalfOpenIfDue() {
+        if (state == State.OPEN
+                && nanoClock.getAsLong() - openedAtNanos >= TimeUnit.MILLISECONDS.toNanos(config.getOpenDurationMillis())) {
+            state = State.HALF_OPEN;
+            rampStep = 1;
+            stepSuccesses = 0;
+            halfOpenRequests = 0;
+            log.info("circuit breaker half-open");
+        }
+    }
+
+    /**
+     * @param acquire 커넥션 획득 결과인지, half-open 단계는 커넥션 획득에 성공한 요청 수로 센다.
+     */
+    private void record(boolean success, boolean acquire) {
+        lock.lock();
+        try {
+            switch (state) {
+                case CLOSED:
+                    recordInWindow(!success);
+                    if (windowCount >= config.getMinimumCalls()
+                            && (double) windowFailures / windowCount >= config.getFailureRateThreshold()) {
+                        open();
+                    }
+                    break;
+                case HALF_OPEN:
+                    if (!success) {
+                        open();
+                    } else if (acquire && ++stepSuccesses >= config.getProbesPerStep()) {
+                        stepSuccesses = 0;
+                        if (++rampStep > config.getRampSteps()) {
+                            close();
+                        }
+                    }
+                    break;
+                case OPEN:
+                    break; // 열기 전에 들어온 요청의 결과
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordInWindow(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        log.warn("circuit breaker open, failure rate = {}/{}", windowFailures, windowCount);
+        state = State.OPEN;
+        openedAtNanos = nanoClock.getAsLong();
+    }
+
+    private void close() {
+        log.info("circuit breaker closed");
+        state = State.CLOSED;
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    /**
+     *  커넥션 획득에서 DB 장애로 볼 실패 - 연결 오류 (SQLState 08)
+     *  ConnectionPool 의 대기 타임아웃(SQLTimeoutException)은 풀이 바쁜 것이므로 제외한다.
+     */
+    static boolean isConnectionFailure(SQLException e) {
+        if (e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith("08"); // connection exception
+    }
+
+    /**
+     *  SQL 실행에서 DB 장애로 볼 실패 - 연결 오류, 타임아웃
+     */
+    static boolean isUnavailable(SQLException e) {
+        if (e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLTimeoutException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith("08"); // connection exception
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class ResilientConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private boolean closed;
+
+        ResilientConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Resilient[" + target + "]";
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        bulkhead.release();
+                        target.close();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || target.isClosed();
+            }
+            Object result = invokeTarget(target, method, args);
+            if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return Proxy.newProxyInstance(ResilientDataSource.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()}, new ResilientStatementHandler((Statement) result, proxy));
+            }
+            return result;
+        }
+    }
+
+    private class ResilientStatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final Object connection;
+
+        ResilientStatementHandler(Statement target, Object connection) {
+            this.target = target;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Resilient[" + target + "]";
+                case "getConnection":
+                    return connection;
+            }
+            if (!method.getName().startsWith("execute")) {
+                return invokeTarget(target, method, args);
+            }
+            try {
+                Object result = invokeTarget(target, method, args);
+                record(true, false);
+                return result;
+            } catch (SQLException e) {
+                record(!isUnavailable(e), false);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package hello.jdbc.connection;
+
+import lombok.Data;
+
+/**
+ *  ResilientDataSource 설정
+ */
+@Data
+public class ResilientDataSourceConfig {
+
+    private int maxConcurrent = 10; // 동시에 빌려줄 수 있는 커넥션 수 (bulkhead)
+    private long bulkheadWaitMillis = 0; // bulkhead 가 찼을 때 기다리는 시간, 0 이면 바로 실패
+
+    private int windowSize = 20; // 실패율을 계산할 최근 호출 수
+    private int minimumCalls = 10; // 이만큼 호출이 쌓이기 전에는 서킷을 열지 않는다.
+    private double failureRateThreshold = 0.5; // 실패율이 이 값 이상이면 서킷을 연다.
+    private long openDurationMillis = 10_000; // 서킷을 열어 두는 시간, 지나면 half-open
+
+    // half-open 에서 rampSteps 단계에 걸쳐 1/rampSteps, 2/rampSteps ... 만큼의 요청만 통과시킨다.
+    // 단계마다 probesPerStep 번 연속 성공하면 다음 단계로, 한 번이라도 실패하면 다시 연다.
+    private int rampSteps = 4;
+    private int probesPerStep = 2;
+
+    public void validate() {
+        if (maxConcurrent < 1 || bulkheadWaitMillis < 0) {
+            throw new IllegalArgumentException("invalid bulkhead maxConcurrent = " + maxConcurrent + ", wait = " + bulkheadWaitMillis);
+        }
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize
+                || failureRateThreshold <= 0 || failureRateThreshold > 1 || openDurationMillis < 0) {
+            throw new IllegalArgumentException("invalid circuit breaker configuration");
+        }
+        if (rampSteps < 1 || probesPerStep < 1) {
+            throw new IllegalArgumentException("invalid half-open ramp steps = " + rampSteps + ", probes = " + probesPerStep);
+        }
+    }
+}
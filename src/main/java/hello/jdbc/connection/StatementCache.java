@@ -0,0 +1,55 @@
+package hello.jdbc.connection;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.PreparedStatement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *  물리 커넥션 하나의 PreparedStatement 캐시 (SQL 문자열 -> PreparedStatement)
+ *  maxSize 를 넘으면 가장 오래 쓰지 않은 statement 를 닫는다. (LRU)
+ *
+ *  커넥션은 한 번에 한 스레드만 빌려 가므로 동기화하지 않는다.
+ *  사용 중인 statement 는 캐시에서 빼 두었다가 close() 할 때 다시 넣으므로, 같은 SQL 을 동시에 두 번 열어도 서로 섞이지 않는다.
+ */
+class StatementCache {
+
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    StatementCache(int maxSize) {
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    JdbcUtils.closeStatement(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     *  캐시된 statement 를 꺼낸다. 없으면 null
+     */
+    PreparedStatement take(String sql) {
+        return statements.remove(sql);
+    }
+
+    void put(String sql, PreparedStatement statement) {
+        PreparedStatement previous = statements.put(sql, statement);
+        if (previous != null && previous != statement) {
+            JdbcUtils.closeStatement(previous);
+        }
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    void closeAll() {
+        statements.values().forEach(JdbcUtils::closeStatement);
+        statements.clear();
+    }
+}
@@ -0,0 +1,58 @@
+package hello.jdbc.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+
+/**
+ *  커넥션 프록시가 만든 Statement 를 감싸서 getConnection() 이 물리 커넥션이 아니라 커넥션 프록시를 돌려주게 한다.
+ *  JdbcTemplate.queryForStream() 처럼 statement.getConnection() 을 닫는 코드도 프록시의 close() 를 거친다.
+ */
+final class StatementProxy {
+
+    private StatementProxy() {
+    }
+
+    /**
+     *  method 가 Statement 를 돌려준 경우에만 감싼다. 그 외의 결과는 그대로 돌려준다.
+     */
+    static Object wrap(Object connection, Method method, Object result) {
+        if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+            return Proxy.newProxyInstance(StatementProxy.class.getClassLoader(),
+                    new Class<?>[]{method.getReturnType()}, new Handler(connection, (Statement) result));
+        }
+        return result;
+    }
+
+    private static class Handler implements InvocationHandler {
+
+        private final Object connection;
+        private final Statement statement;
+
+        Handler(Object connection, Statement statement) {
+            this.connection = connection;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Proxied[" + statement + "]";
+                case "getConnection":
+                    return connection;
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package hello.jdbc.domain;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ *  member_id 순서로 자른 회원 목록 한 페이지
+ *  nextCursor 를 다음 findPage() 의 afterMemberId 로 넘기면 이어서 조회한다. 마지막 페이지면 null 이다.
+ */
+@Value
+public class MemberPage {
+
+    List<Member> members;
+    String nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     *  limit + 1 개를 조회한 결과로 페이지를 만든다. 하나가 더 있으면 다음 페이지가 있다.
+     */
+    public static MemberPage of(List<Member> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new MemberPage(List.copyOf(rows), null);
+        }
+        List<Member> members = List.copyOf(rows.subList(0, limit));
+        return new MemberPage(members, members.get(limit - 1).getMemberId());
+    }
+}
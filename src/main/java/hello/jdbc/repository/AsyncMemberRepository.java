@@ -0,0 +1,164 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ *  MemberRepository 를 CompletableFuture 로 감싼다. 호출한 스레드는 막히지 않고 바로 future 를 받는다.
+ *
+ *  - 가상 스레드(Java 21+)가 있으면 작업마다 가상 스레드를 쓰고, 없으면(Java 17) maxInFlight 개의 스레드 풀을 쓴다.
+ *  - 동시에 DB 로 나가는 작업은 maxInFlight 개까지 - 나머지는 실행 스레드에서 차례를 기다린다. (호출한 스레드는 기다리지 않는다.)
+ *    커넥션 풀보다 훨씬 많은 작업이 한꺼번에 커넥션을 기다리다 타임아웃 나지 않게 한다.
+ *  - 차례를 기다리는 작업은 maxQueued 개까지 - 넘치면 DB 로 보내지 않고 RejectedExecutionException 으로 future 를 실패시킨다.
+ *    호출한 쪽이 DB 보다 빠르게 요청해도 쌓아 둔 작업 때문에 메모리가 끝없이 늘지 않는다.
+ *  - 예외는 감싼 리포지토리가 던진 그대로 future 에 담는다. (V4_2, V5 면 스프링 DataAccessException, V4_1 이면 MyDbException)
+ *    get() 은 ExecutionException, join() 은 CompletionException 의 cause 로 꺼낸다.
+ */
+@Slf4j
+public class AsyncMemberRepository implements AutoCloseable {
+
+    static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    static final int DEFAULT_MAX_QUEUED = 1024;
+
+    private final MemberRepository delegate;
+    private final Semaphore inFlight;
+    private final Semaphore accepted; // 실행 중이거나 차례를 기다리는 작업 - maxInFlight + maxQueued 개까지
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    public AsyncMemberRepository(MemberRepository delegate) {
+        this(delegate, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public AsyncMemberRepository(MemberRepository delegate, int maxInFlight) {
+        this(delegate, maxInFlight, DEFAULT_MAX_QUEUED);
+    }
+
+    public AsyncMemberRepository(MemberRepository delegate, int maxInFlight, int maxQueued) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight = " + maxInFlight);
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued = " + maxQueued);
+        }
+        this.delegate = delegate;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.accepted = new Semaphore(maxInFlight + maxQueued);
+        ExecutorService virtual = virtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtualThreads ? virtual : platformThreadExecutor(maxInFlight, maxInFlight + maxQueued);
+        log.info("async member repository, virtualThreads = {}, maxInFlight = {}, maxQueued = {}", virtualThreads, maxInFlight, maxQueued);
+    }
+
+    public CompletableFuture<Member> save(Member member) {
+        return submit(() -> delegate.save(member));
+    }
+
+    public CompletableFuture<Member> findById(String memberId) {
+        return submit(() -> delegate.findById(memberId));
+    }
+
+    public CompletableFuture<Void> update(String memberId, int money) {
+        return submit(() -> {
+            delegate.update(memberId, money);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> delete(String memberId) {
+        return submit(() -> {
+            delegate.delete(memberId);
+            return null;
+        });
+    }
+
+    boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        // supplyAsync 는 예외를 CompletionException 으로 한 번 더 감싸므로 직접 완료시킨다.
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!accepted.tryAcquire()) {
+            future.completeExceptionally(new RejectedExecutionException("too many pending tasks, maxInFlight + maxQueued reached"));
+            return future;
+        }
+        try {
+            executor.execute(() -> run(task, future));
+        } catch (RejectedExecutionException e) {
+            accepted.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> void run(Supplier<T> task, CompletableFuture<T> future) {
+        T result = null;
+        Throwable failure = null;
+        try {
+            inFlight.acquire();
+            try {
+                result = task.get();
+            } finally {
+                inFlight.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            // future 를 완료하기 전에 자리를 비운다 - 완료를 보고 바로 다시 요청해도 거절되지 않는다.
+            accepted.release();
+        }
+        if (failure != null) {
+            future.completeExceptionally(failure);
+        } else {
+            future.complete(result);
+        }
+    }
+
+    /**
+     *  Java 21 의 Executors.newVirtualThreadPerTaskExecutor() - Java 17 로 컴파일하므로 리플렉션으로 찾는다.
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     *  큐는 accepted 와 같은 크기라 submit() 이 받은 작업으로는 넘치지 않는다. 넘치면 AbortPolicy 로 거절한다.
+     */
+    private static ExecutorService platformThreadExecutor(int threads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "member-async-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     *  새 작업을 받지 않는다. 이미 받은 작업은 끝까지 실행한다.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
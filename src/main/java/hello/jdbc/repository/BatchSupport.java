@@ -0,0 +1,144 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.ex.BatchUpdateFailure.RowFailure;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ *  JDBC 배치 실행 도우미
+ *  addBatch() 로 batchSize 만큼 모아서 executeBatch() 한다.
+ *
+ *  - 트랜잭션 밖(autoCommit)이면 청크마다 커밋한다. 실패한 청크는 롤백하고 그 앞의 청크는 커밋된 채로 남는다.
+ *  - 트랜잭션 안이면 커밋은 트랜잭션에 맡긴다.
+ *  - 실패한 행은 BatchUpdateException 의 updateCounts, getNextException() 으로 찾아서 FailureFactory 가 만든 예외로 알려준다.
+ */
+final class BatchSupport {
+
+    private BatchSupport() {
+    }
+
+    interface RowBinder {
+        void bind(PreparedStatement pstmt, Member member) throws SQLException;
+    }
+
+    /**
+     *  배치 실패 예외를 만든다. - MyBatchUpdateException::new, BatchUpdateDataAccessException::new
+     */
+    interface FailureFactory {
+        RuntimeException create(String message, Throwable cause, int completedRows, List<RowFailure> failures);
+    }
+
+    static <T> List<List<T>> chunks(Collection<T> items, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive, batchSize = " + batchSize);
+        }
+        List<T> all = new ArrayList<>(items);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += batchSize) {
+            chunks.add(all.subList(from, Math.min(all.size(), from + batchSize)));
+        }
+        return chunks;
+    }
+
+    /**
+     *  memberId -> money 를 update 배치에 바인딩할 수 있도록 Member 로 바꾼다. 순서는 map 의 순서를 따른다.
+     */
+    static List<Member> toMembers(Map<String, Integer> moneyByMemberId) {
+        List<Member> members = new ArrayList<>(moneyByMemberId.size());
+        moneyByMemberId.forEach((memberId, money) -> members.add(new Member(memberId, money)));
+        return members;
+    }
+
+    /**
+     * @param transactional con 이 스프링 트랜잭션에 참여하고 있는지 - DataSourceUtils.isConnectionTransactional()
+     * @param translator    SQLException 을 이 리포지토리의 런타임 예외로 바꾼다.
+     * @param failureFactory 일부 행이 실패했을 때 던질 예외
+     * @return 행마다 executeBatch() 가 돌려준 변경 건수
+     */
+    static int[] executeInChunks(Connection con, PreparedStatement pstmt, boolean transactional,
+                                Collection<Member> members, int batchSize, RowBinder binder,
+                                Function<SQLException, RuntimeException> translator,
+                                FailureFactory failureFactory) throws SQLException {
+        List<List<Member>> chunks = chunks(members, batchSize);
+        boolean commitPerChunk = !transactional && con.getAutoCommit();
+        int[] counts = new int[members.size()];
+        if (commitPerChunk) {
+            con.setAutoCommit(false);
+        }
+        try {
+            int completed = 0;
+            for (List<Member> chunk : chunks) {
+                for (Member member : chunk) {
+                    binder.bind(pstmt, member);
+                    pstmt.addBatch();
+                }
+                try {
+                    int[] chunkCounts = pstmt.executeBatch();
+                    System.arraycopy(chunkCounts, 0, counts, completed, chunkCounts.length);
+                } catch (BatchUpdateException e) {
+                    if (commitPerChunk) {
+                        con.rollback();
+                    }
+                    pstmt.clearBatch();
+                    throw failure(e, chunk, completed, translator, failureFactory);
+                } catch (SQLException e) {
+                    if (commitPerChunk) {
+                        con.rollback();
+                    }
+                    throw e;
+                }
+                if (commitPerChunk) {
+                    con.commit();
+                }
+                completed += chunk.size();
+            }
+            return counts;
+        } finally {
+            if (commitPerChunk) {
+                con.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     *  청크 안에서 실패한 행을 찾는다.
+     *  H2 처럼 실패한 행을 건너뛰고 끝까지 실행하는 드라이버는 updateCounts 에 EXECUTE_FAILED 를 채우고,
+     *  처음 실패에서 멈추는 드라이버는 그 앞까지만 updateCounts 를 돌려준다.
+     */
+    static RuntimeException failure(BatchUpdateException e, List<Member> chunk, int completedRows,
+                                    Function<SQLException, RuntimeException> translator, FailureFactory failureFactory) {
+        int[] counts = e.getUpdateCounts() == null ? new int[0] : e.getUpdateCounts();
+        List<Integer> failedIndexes = new ArrayList<>();
+        for (int i = 0; i < counts.length && i < chunk.size(); i++) {
+            if (counts[i] == Statement.EXECUTE_FAILED) {
+                failedIndexes.add(i);
+            }
+        }
+        if (counts.length < chunk.size()) {
+            failedIndexes.add(counts.length);
+        }
+
+        // 드라이버가 실패한 행마다 SQLException 을 이어 붙인다. 모자라면 배치 예외를 그대로 쓴다.
+        List<RowFailure> failures = new ArrayList<>();
+        SQLException next = e.getNextException();
+        for (int index : failedIndexes) {
+            SQLException cause = next != null ? next : e;
+            failures.add(new RowFailure(completedRows + index, chunk.get(index), translator.apply(cause)));
+            if (next != null) {
+                next = next.getNextException();
+            }
+        }
+        return failureFactory.create("batch failed, completedRows = " + completedRows + ", failedRows = " + failures.size(),
+                e, completedRows, failures);
+    }
+}
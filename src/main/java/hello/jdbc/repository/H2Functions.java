@@ -0,0 +1,71 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StreamUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *  H2 에 등록하는 사용자 정의 함수
+ *  mem, file 은 schema.sql 이 h2-functions.sql 을 실행해서 등록하고,
+ *  tcp 는 이미 떠 있는 서버에 접속하므로 애플리케이션 시작 시 register() 로 등록한다.
+ *  H2 에는 create or replace alias 가 없어서, 이미 있는 함수의 소스가 다르면 register() 가 지우고 다시 만든다.
+ */
+@Slf4j
+public abstract class H2Functions {
+
+    static final String SCRIPT = "h2-functions.sql";
+
+    // 이체했으면 1, 아니면 0 - h2-functions.sql 참고
+    static final String TRANSFER_MONEY = "call TRANSFER_MONEY(?, ?, ?)";
+
+    private static final Pattern ALIAS = Pattern.compile("create alias if not exists (\\w+) as \\$\\$(.*)\\$\\$", Pattern.DOTALL);
+
+    /**
+     *  h2-functions.sql 을 실행한다. 같은 소스의 함수가 이미 있으면 아무것도 하지 않고,
+     *  소스가 다른 예전 함수가 있으면 지우고 다시 만든다. (DB 의 함수가 항상 배포한 코드와 같다.)
+     */
+    public static void register(DataSource dataSource) {
+        String script = script();
+        Matcher alias = ALIAS.matcher(script);
+        if (!alias.find()) {
+            throw new IllegalStateException(SCRIPT + " must be a single 'create alias if not exists NAME as $$ ... $$'");
+        }
+        String name = alias.group(1).toUpperCase(Locale.ROOT);
+        String source = alias.group(2);
+
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        List<String> registered = template.queryForList("select routine_definition from information_schema.routines"
+                + " where routine_schema = schema() and routine_name = ?", String.class, name);
+        if (registered.contains(source)) {
+            log.info("H2 function {} is up to date", name);
+            return;
+        }
+        if (!registered.isEmpty()) {
+            // 지우고 만드는 사이에 부른 호출은 실패한다. 애플리케이션 시작 시 한 번만 일어난다.
+            log.info("replacing outdated H2 function {}", name);
+            template.execute("drop alias if exists " + name);
+        }
+        template.execute(script);
+        log.info("registered H2 function {} from {}", name, SCRIPT);
+    }
+
+    private static String script() {
+        try {
+            String script = StreamUtils.copyToString(new ClassPathResource(SCRIPT).getInputStream(), StandardCharsets.UTF_8).strip();
+            // 한 문장짜리 스크립트 - JDBC 로 실행할 때는 끝의 ; 를 뺀다.
+            return script.endsWith(";") ? script.substring(0, script.length() - 1) : script;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ *  member_id in (...) 조회 도우미
+ *
+ *  - 중복을 뺀 id 를 최대 MAX_IN_SIZE 개씩 나눈다.
+ *  - 청크 크기를 2의 거듭제곱(1, 2, 4 ... MAX_IN_SIZE)으로 맞추고 남는 자리는 마지막 id 로 채운다.
+ *    SQL 모양이 몇 개로 고정되므로 DB 의 실행 계획 캐시, 커넥션 풀의 statement 캐시를 다시 쓸 수 있다.
+ *  - executor 가 있으면 청크마다 다른 커넥션으로 동시에 조회한다.
+ *    단, 커넥션이 현재 스레드에 바인딩되어 있으면(트랜잭션, ConnectionScope) 다른 스레드에서는 그 커넥션이 보이지 않으므로 순서대로 조회한다.
+ */
+final class InListSupport {
+
+    static final int MAX_IN_SIZE = 256;
+
+    private static final String[] SQL = new String[Integer.numberOfTrailingZeros(MAX_IN_SIZE) + 1];
+
+    static {
+        for (int shape = 0; shape < SQL.length; shape++) {
+            StringBuilder sql = new StringBuilder("select * from member where member_id in (?");
+            sql.append(", ?".repeat((1 << shape) - 1));
+            SQL[shape] = sql.append(")").toString();
+        }
+    }
+
+    private InListSupport() {
+    }
+
+    interface ChunkQuery {
+        List<Member> query(String sql, List<String> paddedIds);
+    }
+
+    /**
+     * @param bound    커넥션이 현재 스레드에 바인딩되어 있는지 - TransactionSynchronizationManager.hasResource(dataSource)
+     * @param executor null 이면 호출한 스레드에서 순서대로 조회한다.
+     */
+    static Map<String, Member> findAll(Collection<String> memberIds, Executor executor, boolean bound, ChunkQuery query) {
+        List<List<String>> chunks = chunks(memberIds);
+        Map<String, Member> found = new HashMap<>();
+        if (executor == null || bound || chunks.size() < 2) {
+            for (List<String> chunk : chunks) {
+                query.query(sql(chunk.size()), chunk).forEach(member -> found.put(member.getMemberId(), member));
+            }
+            return found;
+        }
+
+        List<CompletableFuture<List<Member>>> futures = new ArrayList<>();
+        for (List<String> chunk : chunks) {
+            futures.add(CompletableFuture.supplyAsync(() -> query.query(sql(chunk.size()), chunk), executor));
+        }
+        try {
+            for (CompletableFuture<List<Member>> future : futures) {
+                future.join().forEach(member -> found.put(member.getMemberId(), member));
+            }
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+        return found;
+    }
+
+    /**
+     *  중복을 뺀 id 를 MAX_IN_SIZE 개씩 나누고 2의 거듭제곱 크기로 채운다.
+     */
+    static List<List<String>> chunks(Collection<String> memberIds) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(memberIds));
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += MAX_IN_SIZE) {
+            List<String> chunk = new ArrayList<>(distinct.subList(from, Math.min(distinct.size(), from + MAX_IN_SIZE)));
+            String last = chunk.get(chunk.size() - 1);
+            while (Integer.bitCount(chunk.size()) != 1) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    static String sql(int size) {
+        return SQL[Integer.numberOfTrailingZeros(size)];
+    }
+}
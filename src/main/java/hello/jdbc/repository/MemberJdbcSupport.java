@@ -0,0 +1,345 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.MemberPage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ *  V4_1, V4_2 가 함께 쓰는 JDBC 구현 (saveAll, addMoney, transferMoney, findPage, streamAll 등)
+ *  두 리포지토리는 예외 변환만 다르므로 Translator, FailureFactory 만 받고 나머지는 여기서 한 번만 구현한다.
+ *  커넥션은 DataSourceUtils 로 가져오고 반환하므로 트랜잭션 동기화에 참여한다.
+ */
+@Slf4j
+final class MemberJdbcSupport {
+
+    /**
+     *  SQLException 을 리포지토리의 런타임 예외로 바꾼다. - V4_1 은 MyDbException, V4_2 는 SQLExceptionTranslator
+     */
+    @FunctionalInterface
+    interface Translator {
+        RuntimeException translate(String task, String sql, SQLException e);
+    }
+
+    private final DataSource dataSource;
+    private final Translator translator;
+    private final BatchSupport.FailureFactory failureFactory;
+
+    MemberJdbcSupport(DataSource dataSource, Translator translator, BatchSupport.FailureFactory failureFactory) {
+        this.dataSource = dataSource;
+        this.translator = translator;
+        this.failureFactory = failureFactory;
+    }
+
+    void saveAll(Collection<Member> members, int batchSize) {
+        String sql = MemberSql.INSERT;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            // addBatch() 로 모아서 한 번에 보낸다.
+            BatchSupport.executeInChunks(con, pstmt, DataSourceUtils.isConnectionTransactional(con, dataSource),
+                    members, batchSize, (ps, member) -> {
+                        ps.setString(1, member.getMemberId());
+                        ps.setInt(2, member.getMoney());
+                    }, e -> translator.translate("saveAll", sql, e), failureFactory);
+        } catch (SQLException e) {
+            throw translator.translate("saveAll", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    boolean addMoney(String memberId, int delta) {
+        String sql = MemberSql.ADD_MONEY;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setInt(1, delta);
+            pstmt.setString(2, memberId);
+            return pstmt.executeUpdate() == 1;
+        } catch (SQLException e) {
+            throw translator.translate("addMoney", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    boolean subtractMoneyIfSufficient(String memberId, int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("amount must be positive, amount = " + amount);
+        }
+        String sql = MemberSql.SUBTRACT_MONEY_IF_SUFFICIENT;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setInt(1, amount);
+            pstmt.setString(2, memberId);
+            pstmt.setInt(3, amount);
+            return pstmt.executeUpdate() == 1;
+        } catch (SQLException e) {
+            throw translator.translate("subtractMoneyIfSufficient", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    int transferMoney(String fromId, String toId, int money) {
+        // 2 가 아니면 호출한 쪽에서 트랜잭션을 롤백해야 한다. - MemberSql.TRANSFER 참고
+        String sql = MemberSql.TRANSFER;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, fromId);
+            pstmt.setInt(2, money);
+            pstmt.setString(3, toId);
+            pstmt.setInt(4, money);
+            pstmt.setString(5, fromId);
+            pstmt.setString(6, toId);
+            pstmt.setString(7, fromId);
+            pstmt.setInt(8, money);
+            pstmt.setInt(9, money);
+            pstmt.setString(10, fromId);
+            pstmt.setString(11, toId);
+            pstmt.setString(12, fromId);
+            pstmt.setInt(13, money);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw translator.translate("transferMoney", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    boolean transferMoneyInDatabase(String fromId, String toId, int money) {
+        if (money <= 0) {
+            throw new IllegalArgumentException("money must be positive, money = " + money);
+        }
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("fromId and toId must differ, memberId = " + fromId);
+        }
+        String sql = H2Functions.TRANSFER_MONEY;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, fromId);
+            pstmt.setString(2, toId);
+            pstmt.setInt(3, money);
+            rs = pstmt.executeQuery();
+            return rs.next() && rs.getInt(1) == 1;
+        } catch (SQLException e) {
+            throw translator.translate("transferMoneyInDatabase", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    Member saveOrUpdate(Member member) {
+        // 키가 같은 행이 있으면 update, 없으면 insert - 한 번에 처리한다.
+        String sql = MemberSql.MERGE;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+            pstmt.executeUpdate();
+            return member;
+        } catch (SQLException e) {
+            throw translator.translate("saveOrUpdate", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    void saveOrUpdateAll(Collection<Member> members, int batchSize) {
+        String sql = MemberSql.MERGE;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            BatchSupport.executeInChunks(con, pstmt, DataSourceUtils.isConnectionTransactional(con, dataSource),
+                    members, batchSize, (ps, member) -> {
+                        ps.setString(1, member.getMemberId());
+                        ps.setInt(2, member.getMoney());
+                    }, e -> translator.translate("saveOrUpdateAll", sql, e), failureFactory);
+        } catch (SQLException e) {
+            throw translator.translate("saveOrUpdateAll", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    int[] updateAll(Map<String, Integer> moneyByMemberId, int batchSize) {
+        String sql = MemberSql.UPDATE;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            // 한 건씩 update() 를 부르면 건마다 statement 준비, 실행, 로그가 반복된다.
+            int[] counts = BatchSupport.executeInChunks(con, pstmt, DataSourceUtils.isConnectionTransactional(con, dataSource),
+                    BatchSupport.toMembers(moneyByMemberId), batchSize, (ps, member) -> {
+                        ps.setInt(1, member.getMoney());
+                        ps.setString(2, member.getMemberId());
+                    }, e -> translator.translate("updateAll", sql, e), failureFactory);
+            log.debug("updateAll size = {}", counts.length);
+            return counts;
+        } catch (SQLException e) {
+            throw translator.translate("updateAll", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    MemberPage findPage(String afterMemberId, int limit) {
+        String sql = afterMemberId == null
+                ? "select * from member order by member_id limit ?"
+                : "select * from member where member_id > ? order by member_id limit ?";
+        if (limit < 1 || limit > MemberRepository.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MemberRepository.MAX_PAGE_SIZE + ", limit = " + limit);
+        }
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql);
+            int index = 1;
+            if (afterMemberId != null) {
+                pstmt.setString(index++, afterMemberId);
+            }
+            pstmt.setInt(index, limit + 1); // 다음 페이지가 있는지 보려고 하나 더 가져온다.
+            rs = pstmt.executeQuery();
+
+            List<Member> members = new ArrayList<>();
+            while (rs.next()) {
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+                members.add(member);
+            }
+            return MemberPage.of(members, limit);
+        } catch (SQLException e) {
+            throw translator.translate("findPage", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    Stream<Member> streamAll() {
+        String sql = "select * from member";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(ResultSetStream.FETCH_SIZE);
+            rs = pstmt.executeQuery();
+        } catch (SQLException e) {
+            close(con, pstmt, rs);
+            throw translator.translate("streamAll", sql, e);
+        }
+
+        // 커넥션은 Stream.close() 에서 반환한다.
+        Connection streamCon = con;
+        PreparedStatement streamPstmt = pstmt;
+        ResultSet streamRs = rs;
+        return ResultSetStream.of(rs, (row, rowNum) -> {
+            Member member = new Member();
+            member.setMemberId(row.getString("member_id"));
+            member.setMoney(row.getInt("money"));
+            return member;
+        }, e -> translator.translate("streamAll", sql, e), () -> close(streamCon, streamPstmt, streamRs));
+    }
+
+    Map<String, Member> findAllById(Collection<String> memberIds, Executor executor) {
+        return InListSupport.findAll(memberIds, executor, TransactionSynchronizationManager.hasResource(dataSource), (sql, ids) -> {
+            Connection con = null;
+            PreparedStatement pstmt = null;
+            ResultSet rs = null;
+
+            try {
+                con = getConnection();
+                pstmt = con.prepareStatement(sql);
+                for (int i = 0; i < ids.size(); i++) {
+                    pstmt.setString(i + 1, ids.get(i));
+                }
+                rs = pstmt.executeQuery();
+
+                List<Member> members = new ArrayList<>();
+                while (rs.next()) {
+                    Member member = new Member();
+                    member.setMemberId(rs.getString("member_id"));
+                    member.setMoney(rs.getInt("money"));
+                    members.add(member);
+                }
+                return members;
+            } catch (SQLException e) {
+                throw translator.translate("findAllById", sql, e);
+            } finally {
+                close(con, pstmt, rs);
+            }
+        });
+    }
+
+    private void close(Connection con, Statement stmt, ResultSet rs) {
+        JdbcUtils.closeResultSet(rs);
+        JdbcUtils.closeStatement(stmt);
+        DataSourceUtils.releaseConnection(con, dataSource);
+    }
+
+    private Connection getConnection() {
+        Connection con = DataSourceUtils.getConnection(dataSource);
+        log.info("get connection = {} class = {}", con, con.getClass());
+        return con;
+    }
+}
@@ -1,12 +1,111 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.domain.MemberPage;
 
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 public interface MemberRepository {
+    int DEFAULT_BATCH_SIZE = 1000;
+    int MAX_PAGE_SIZE = 1000;
+
     Member save(Member member);
     Member findById(String memberId);
     void update(String memberId, int money);
     void delete(String memberId);
+
+    /**
+     *  money = money + delta 를 DB 에서 계산한다. 먼저 조회하지 않으므로 동시에 바꿔도 변경이 사라지지 않는다.
+     *  @return 회원이 있어서 바뀌었으면 true
+     */
+    boolean addMoney(String memberId, int delta);
+
+    /**
+     *  money 가 amount 이상일 때만 뺀다. 잔액 확인과 차감이 한 문장이라 음수가 되지 않는다.
+     *  amount 가 0 이하면 문장을 실행하지 않고 IllegalArgumentException 을 던진다. (음수면 입금이 되어 버린다.)
+     *  @return 바뀌었으면 true, 회원이 없거나 잔액이 부족하면 false
+     */
+    boolean subtractMoneyIfSufficient(String memberId, int amount);
+
+    /**
+     *  fromId 에서 빼고 toId 에 더하는 것을 update 한 문장으로 처리한다.
+     *  두 회원이 다 있고 fromId 의 잔액이 충분할 때만 두 행을 바꾼다. 아니면 어떤 행도 바꾸지 않는다.
+     *  money 가 0 이하거나 같은 회원끼리면 어떤 행도 바꾸지 않고 0 을 돌려준다.
+     *  같은 회원에서 동시에 출금하면 입금 행만 바뀌어 1 을 돌려줄 수 있다. 트랜잭션 안에서 호출하고 2 가 아니면 롤백해야 한다.
+     *  한 DB 안에서만 처리한다. ShardedMemberRepository 는 두 회원이 다른 샤드에 있으면 IllegalArgumentException 을 던진다.
+     *  @return 바뀐 행 수 - 이체했으면 2, 아니면 0 (동시에 출금했다면 1)
+     */
+    int transferMoney(String fromId, String toId, int money);
+
+    /**
+     *  DB 에 등록된 TRANSFER_MONEY 함수를 CALL 한 번으로 실행한다. (h2-functions.sql)
+     *  잔액 확인, 출금, 입금을 DB 안에서 한 문장으로 처리하므로 호출한 쪽에서 트랜잭션을 시작하지 않아도 된다.
+     *  한 DB 안에서만 처리한다. ShardedMemberRepository 는 두 회원이 다른 샤드에 있으면 IllegalArgumentException 을 던진다.
+     *  money 가 0 이하거나 같은 회원끼리면 함수를 부르지 않고 IllegalArgumentException 을 던진다.
+     *  @return 이체했으면 true, 없는 회원이거나 잔액이 부족하면 false (아무것도 바뀌지 않는다.)
+     */
+    boolean transferMoneyInDatabase(String fromId, String toId, int money);
+
+    /**
+     *  여러 회원을 batchSize 씩 묶어서 저장한다.
+     *  트랜잭션 밖이면 묶음마다 순서대로 커밋하고, 실패하면 실패한 행을 담은 BatchUpdateFailure 예외를 던진다.
+     *  (V4_1 은 MyBatchUpdateException, V4_2, V5 는 BatchUpdateDataAccessException)
+     */
+    void saveAll(Collection<Member> members, int batchSize);
+
+    default void saveAll(Collection<Member> members) {
+        saveAll(members, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     *  없으면 저장하고 있으면 money 를 바꾼다. H2 의 MERGE INTO ... KEY(member_id) 한 문장으로 처리한다.
+     */
+    Member saveOrUpdate(Member member);
+
+    /**
+     *  saveOrUpdate 를 batchSize 씩 묶어서 실행한다. 트랜잭션, 실패 처리는 saveAll 과 같다.
+     */
+    void saveOrUpdateAll(Collection<Member> members, int batchSize);
+
+    default void saveOrUpdateAll(Collection<Member> members) {
+        saveOrUpdateAll(members, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     *  여러 회원의 money 를 batchSize 씩 묶어서 변경한다. 트랜잭션, 실패 처리는 saveAll 과 같다.
+     *  @return moneyByMemberId 의 순서대로 행마다 변경된 건수 (없는 회원은 0)
+     */
+    int[] updateAll(Map<String, Integer> moneyByMemberId, int batchSize);
+
+    default int[] updateAll(Map<String, Integer> moneyByMemberId) {
+        return updateAll(moneyByMemberId, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     *  여러 회원을 member_id in (...) 으로 한 번에 조회한다. 없는 회원은 결과에 들어가지 않는다. (예외를 던지지 않는다.)
+     *  executor 를 주면 id 가 많을 때 나눠진 조회를 동시에 실행한다. null 이면 순서대로 실행한다.
+     */
+    Map<String, Member> findAllById(Collection<String> memberIds, Executor executor);
+
+    default Map<String, Member> findAllById(Collection<String> memberIds) {
+        return findAllById(memberIds, null);
+    }
+
+    /**
+     *  테이블 전체를 앞으로만 읽는 커서로 조금씩 가져온다. (임베디드 H2 는 LAZY_QUERY_EXECUTION 이 켜져 있어야 한다.)
+     *  커넥션은 Stream 이 닫힐 때까지 잡고 있으므로 반드시 try-with-resources 로 닫아야 한다.
+     */
+    Stream<Member> streamAll();
+
+    /**
+     *  member_id 순서로 afterMemberId 다음부터 limit 개를 조회한다. (keyset 페이징)
+     *  offset 으로 건너뛰지 않고 기본 키 인덱스에서 바로 시작하므로 몇 번째 페이지든 조회 시간이 같다.
+     *  afterMemberId 가 null 이면 첫 페이지
+     *  limit 이 1 ~ MAX_PAGE_SIZE 밖이면 IllegalArgumentException 을 던진다. (limit + 1 개를 조회하므로 넘치지 않게 막는다.)
+     */
+    MemberPage findPage(String afterMemberId, int limit);
 }
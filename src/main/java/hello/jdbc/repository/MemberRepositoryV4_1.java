@@ -1,14 +1,21 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.domain.MemberPage;
+import hello.jdbc.repository.ex.MyBatchUpdateException;
 import hello.jdbc.repository.ex.MyDbException;
+import hello.jdbc.repository.ex.MyDuplicateKeyException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.Collection;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 /**
  *  예외 누수 문제 해결
@@ -23,14 +30,17 @@ import java.util.NoSuchElementException;
 public class MemberRepositoryV4_1 implements MemberRepository{
 
     private final DataSource dataSource;
+    // saveAll, addMoney 등 V4_2 와 같은 구현은 MemberJdbcSupport 에 있다. 예외 변환만 넘긴다.
+    private final MemberJdbcSupport jdbcSupport;
     // DataSource 를 사용하기 위해 의존관계 주입을 받는다.
     public MemberRepositoryV4_1(DataSource dataSource) {
         this.dataSource = dataSource;
+        this.jdbcSupport = new MemberJdbcSupport(dataSource, (task, sql, e) -> translate(e), MyBatchUpdateException::new);
     }
 
     @Override
     public Member save(Member member) {
-        String sql = "insert into member(member_id, money) values(?, ?)";
+        String sql = MemberSql.INSERT;
 
         Connection con = null;
         // PreparedStatement 는 Statement 와 다르게 파라미터를 바인딩 할 수 있다.
@@ -57,7 +67,7 @@ public class MemberRepositoryV4_1 implements MemberRepository{
 
     @Override
     public Member findById(String memberId) {
-        String sql = "select * from member where member_id = ?";
+        String sql = MemberSql.FIND_BY_ID;
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -91,7 +101,7 @@ public class MemberRepositoryV4_1 implements MemberRepository{
 
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money = ? where member_id = ?";
+        String sql = MemberSql.UPDATE;
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -115,7 +125,7 @@ public class MemberRepositoryV4_1 implements MemberRepository{
 
     @Override
     public void delete(String memberId) {
-        String sql = "delete from member where member_id = ?";
+        String sql = MemberSql.DELETE;
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -137,6 +147,70 @@ public class MemberRepositoryV4_1 implements MemberRepository{
 
     }
 
+    @Override
+    public void saveAll(Collection<Member> members, int batchSize) {
+        jdbcSupport.saveAll(members, batchSize);
+    }
+
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+        return jdbcSupport.addMoney(memberId, delta);
+    }
+
+    @Override
+    public boolean subtractMoneyIfSufficient(String memberId, int amount) {
+        return jdbcSupport.subtractMoneyIfSufficient(memberId, amount);
+    }
+
+    @Override
+    public int transferMoney(String fromId, String toId, int money) {
+        return jdbcSupport.transferMoney(fromId, toId, money);
+    }
+
+    @Override
+    public boolean transferMoneyInDatabase(String fromId, String toId, int money) {
+        return jdbcSupport.transferMoneyInDatabase(fromId, toId, money);
+    }
+
+    @Override
+    public Member saveOrUpdate(Member member) {
+        return jdbcSupport.saveOrUpdate(member);
+    }
+
+    @Override
+    public void saveOrUpdateAll(Collection<Member> members, int batchSize) {
+        jdbcSupport.saveOrUpdateAll(members, batchSize);
+    }
+
+    @Override
+    public int[] updateAll(Map<String, Integer> moneyByMemberId, int batchSize) {
+        return jdbcSupport.updateAll(moneyByMemberId, batchSize);
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        return jdbcSupport.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+        return jdbcSupport.streamAll();
+    }
+
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds, Executor executor) {
+        return jdbcSupport.findAllById(memberIds, executor);
+    }
+
+    private MyDbException translate(SQLException e) {
+        //h2 db
+        if (e.getErrorCode() == 23505) {
+            // 증복 예외 처리
+            return new MyDuplicateKeyException(e);
+        }
+        return new MyDbException(e);
+    }
+
     // Statement 는 sql 를 그대로 넣는것
     private void close(Connection con, Statement stmt, ResultSet rs) {
 
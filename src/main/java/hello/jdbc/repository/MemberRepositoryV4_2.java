@@ -1,6 +1,8 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.domain.MemberPage;
+import hello.jdbc.repository.ex.BatchUpdateDataAccessException;
 import hello.jdbc.repository.ex.MyDbException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.DataSourceUtils;
@@ -10,7 +12,12 @@ import org.springframework.jdbc.support.SQLExceptionTranslator;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.Collection;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
 
 /**
  *  예외 누수 문제 해결
@@ -28,15 +35,18 @@ public class MemberRepositoryV4_2 implements MemberRepository{
     private final DataSource dataSource;
     // DataSource 를 사용하기 위해 의존관계 주입을 받는다.
     private final SQLExceptionTranslator exTranslator;
+    // saveAll, addMoney 등 V4_1 과 같은 구현은 MemberJdbcSupport 에 있다. 예외 변환만 넘긴다.
+    private final MemberJdbcSupport jdbcSupport;
 
     public MemberRepositoryV4_2(DataSource dataSource) {
         this.dataSource = dataSource;
         this.exTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        this.jdbcSupport = new MemberJdbcSupport(dataSource, exTranslator::translate, BatchUpdateDataAccessException::new);
     }
 
     @Override
     public Member save(Member member) {
-        String sql = "insert into member(member_id, money) values(?, ?)";
+        String sql = MemberSql.INSERT;
 
         Connection con = null;
         // PreparedStatement 는 Statement 와 다르게 파라미터를 바인딩 할 수 있다.
@@ -64,7 +74,7 @@ public class MemberRepositoryV4_2 implements MemberRepository{
 
     @Override
     public Member findById(String memberId) {
-        String sql = "select * from member where member_id = ?";
+        String sql = MemberSql.FIND_BY_ID;
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -99,7 +109,7 @@ public class MemberRepositoryV4_2 implements MemberRepository{
 
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money = ? where member_id = ?";
+        String sql = MemberSql.UPDATE;
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -124,7 +134,7 @@ public class MemberRepositoryV4_2 implements MemberRepository{
 
     @Override
     public void delete(String memberId) {
-        String sql = "delete from member where member_id = ?";
+        String sql = MemberSql.DELETE;
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -147,6 +157,95 @@ public class MemberRepositoryV4_2 implements MemberRepository{
 
     }
 
+    @Override
+    public void saveAll(Collection<Member> members, int batchSize) {
+        jdbcSupport.saveAll(members, batchSize);
+    }
+
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+        return jdbcSupport.addMoney(memberId, delta);
+    }
+
+    @Override
+    public boolean subtractMoneyIfSufficient(String memberId, int amount) {
+        return jdbcSupport.subtractMoneyIfSufficient(memberId, amount);
+    }
+
+    @Override
+    public int transferMoney(String fromId, String toId, int money) {
+        return jdbcSupport.transferMoney(fromId, toId, money);
+    }
+
+    @Override
+    public boolean transferMoneyInDatabase(String fromId, String toId, int money) {
+        return jdbcSupport.transferMoneyInDatabase(fromId, toId, money);
+    }
+
+    @Override
+    public Member saveOrUpdate(Member member) {
+        return jdbcSupport.saveOrUpdate(member);
+    }
+
+    @Override
+    public void saveOrUpdateAll(Collection<Member> members, int batchSize) {
+        jdbcSupport.saveOrUpdateAll(members, batchSize);
+    }
+
+    @Override
+    public int[] updateAll(Map<String, Integer> moneyByMemberId, int batchSize) {
+        return jdbcSupport.updateAll(moneyByMemberId, batchSize);
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        return jdbcSupport.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+        return jdbcSupport.streamAll();
+    }
+
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds, Executor executor) {
+        return jdbcSupport.findAllById(memberIds, executor);
+    }
+
+    /**
+     *  member 테이블 전체를 Flow.Publisher 로 내보낸다. 구독자가 request 한 만큼만 ResultSet 에서 읽는다.
+     *  커넥션은 executor 스레드에서 dataSource 로부터 가져오므로 호출한 쪽의 트랜잭션에는 참여하지 않는다.
+     *  완료, 에러, cancel 때 커넥션을 반환한다.
+     */
+    public Flow.Publisher<Member> publishAll(Executor executor) {
+        String sql = "select * from member";
+        return new ResultSetPublisher<>(() -> {
+            Connection con = null;
+            PreparedStatement pstmt = null;
+            ResultSet rs = null;
+
+            try {
+                con = getConnection();
+                pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                pstmt.setFetchSize(ResultSetStream.FETCH_SIZE);
+                rs = pstmt.executeQuery();
+            } catch (SQLException e) {
+                close(con, pstmt, rs);
+                throw e;
+            }
+
+            Connection cursorCon = con;
+            PreparedStatement cursorPstmt = pstmt;
+            ResultSet cursorRs = rs;
+            return new ResultSetPublisher.Cursor(rs, () -> close(cursorCon, cursorPstmt, cursorRs));
+        }, (row, rowNum) -> {
+            Member member = new Member();
+            member.setMemberId(row.getString("member_id"));
+            member.setMoney(row.getInt("money"));
+            return member;
+        }, e -> exTranslator.translate("publishAll", sql, e), executor);
+    }
+
     // Statement 는 sql 를 그대로 넣는것
     private void close(Connection con, Statement stmt, ResultSet rs) {
 
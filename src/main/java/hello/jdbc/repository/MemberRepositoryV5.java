@@ -1,17 +1,26 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.domain.MemberPage;
+import hello.jdbc.repository.ex.BatchUpdateDataAccessException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
 import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 /**
  *  예외 누수 문제 해결
@@ -35,14 +44,14 @@ public class MemberRepositoryV5 implements MemberRepository{
 
     @Override
     public Member save(Member member) {
-        String sql = "insert into member(member_id, money) values(?, ?)";
+        String sql = MemberSql.INSERT;
         template.update(sql, member.getMemberId(), member.getMoney());
         return member;
     }
 
     @Override
     public Member findById(String memberId) {
-        String sql = "select * from member where member_id = ?";
+        String sql = MemberSql.FIND_BY_ID;
         // memberRowMapper - 쿼리 결과를 어떻게 매핑
         // queryForObject - 한건 조회
         Member member = template.queryForObject(sql, memberRowMapper(), memberId);
@@ -61,17 +70,139 @@ public class MemberRepositoryV5 implements MemberRepository{
 
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money = ? where member_id = ?";
+        String sql = MemberSql.UPDATE;
 
         template.update(sql, money, memberId);
     }
 
     @Override
     public void delete(String memberId) {
-        String sql = "delete from member where member_id = ?";
+        String sql = MemberSql.DELETE;
 
         template.update(sql, memberId);
 
     }
 
+    @Override
+    public void saveAll(Collection<Member> members, int batchSize) {
+        String sql = MemberSql.INSERT;
+        batchUpdate("saveAll", sql, members, batchSize, (ps, member) -> {
+            ps.setString(1, member.getMemberId());
+            ps.setInt(2, member.getMoney());
+        });
+    }
+
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+        String sql = MemberSql.ADD_MONEY;
+        return template.update(sql, delta, memberId) == 1;
+    }
+
+    @Override
+    public boolean subtractMoneyIfSufficient(String memberId, int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("amount must be positive, amount = " + amount);
+        }
+        String sql = MemberSql.SUBTRACT_MONEY_IF_SUFFICIENT;
+        return template.update(sql, amount, memberId, amount) == 1;
+    }
+
+    @Override
+    public int transferMoney(String fromId, String toId, int money) {
+        // 2 가 아니면 호출한 쪽에서 트랜잭션을 롤백해야 한다. - MemberSql.TRANSFER 참고
+        String sql = MemberSql.TRANSFER;
+        return template.update(sql, fromId, money, toId, money, fromId, toId, fromId, money, money, fromId, toId, fromId, money);
+    }
+
+    @Override
+    public boolean transferMoneyInDatabase(String fromId, String toId, int money) {
+        if (money <= 0) {
+            throw new IllegalArgumentException("money must be positive, money = " + money);
+        }
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("fromId and toId must differ, memberId = " + fromId);
+        }
+        Integer result = template.queryForObject(H2Functions.TRANSFER_MONEY, Integer.class, fromId, toId, money);
+        return result != null && result == 1;
+    }
+
+    @Override
+    public Member saveOrUpdate(Member member) {
+        // 키가 같은 행이 있으면 update, 없으면 insert - 한 번에 처리한다.
+        String sql = MemberSql.MERGE;
+        template.update(sql, member.getMemberId(), member.getMoney());
+        return member;
+    }
+
+    @Override
+    public void saveOrUpdateAll(Collection<Member> members, int batchSize) {
+        String sql = MemberSql.MERGE;
+        batchUpdate("saveOrUpdateAll", sql, members, batchSize, (ps, member) -> {
+            ps.setString(1, member.getMemberId());
+            ps.setInt(2, member.getMoney());
+        });
+    }
+
+    @Override
+    public int[] updateAll(Map<String, Integer> moneyByMemberId, int batchSize) {
+        String sql = MemberSql.UPDATE;
+        return batchUpdate("updateAll", sql, BatchSupport.toMembers(moneyByMemberId), batchSize, (ps, member) -> {
+            ps.setInt(1, member.getMoney());
+            ps.setString(2, member.getMemberId());
+        });
+    }
+
+    /**
+     *  batchSize 씩 묶어서 실행한다. 묶음 단위 커밋은 V4 와 같이 BatchSupport 가 커넥션에서 처리하고,
+     *  바깥에 트랜잭션이 있으면 커밋은 트랜잭션에 맡긴다.
+     *
+     *  template.batchUpdate(sql, chunk, batchSize, setter) 를 쓰지 않는 이유
+     *  - 트랜잭션 밖에서 부르면 묶음마다 autoCommit 커넥션을 새로 받아서 행마다 커밋된다.
+     *    실패한 묶음만 롤백하려면 묶음마다 트랜잭션이 필요한데, 리포지토리가 트랜잭션 매니저를 갖지 않는다.
+     *  - BatchUpdateException 을 DataAccessException 으로 감싸서 던지므로 실패한 행의 updateCounts 를 다시 꺼내야 한다.
+     *  그래서 한 커넥션에서 commit/rollback 을 직접 하는 BatchSupport 를 쓰고,
+     *  배치 실패는 BatchUpdateDataAccessException 으로 던지고, 실패한 행은 JdbcTemplate 의 예외 변환기로 변환해서 담는다.
+     */
+    private int[] batchUpdate(String task, String sql, Collection<Member> members, int batchSize,
+                              BatchSupport.RowBinder binder) {
+        return template.execute((ConnectionCallback<int[]>) con -> {
+            try (PreparedStatement pstmt = con.prepareStatement(sql)) {
+                // 실패한 행마다 JdbcTemplate 의 예외 변환기로 변환한다.
+                return BatchSupport.executeInChunks(con, pstmt, DataSourceUtils.isConnectionTransactional(con, template.getDataSource()),
+                        members, batchSize, binder, e -> template.getExceptionTranslator().translate(task, sql, e),
+                        BatchUpdateDataAccessException::new);
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds, Executor executor) {
+        return InListSupport.findAll(memberIds, executor, TransactionSynchronizationManager.hasResource(template.getDataSource()),
+                (sql, ids) -> template.query(sql, memberRowMapper(), ids.toArray()));
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+        String sql = "select * from member";
+        // queryForStream - Stream 이 닫힐 때 ResultSet, 커넥션을 정리한다.
+        return template.queryForStream(con -> {
+            PreparedStatement pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(ResultSetStream.FETCH_SIZE);
+            return pstmt;
+        }, memberRowMapper());
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE + ", limit = " + limit);
+        }
+        // 다음 페이지가 있는지 보려고 하나 더 가져온다.
+        List<Member> members = afterMemberId == null
+                ? template.query("select * from member order by member_id limit ?", memberRowMapper(), limit + 1)
+                : template.query("select * from member where member_id > ? order by member_id limit ?",
+                memberRowMapper(), afterMemberId, limit + 1);
+        return MemberPage.of(members, limit);
+    }
+
 }
@@ -0,0 +1,31 @@
+package hello.jdbc.repository;
+
+import java.util.List;
+
+/**
+ *  MemberRepositoryV4_1, V4_2, V5 가 같이 쓰는 SQL
+ *  ConnectionWarmUp 도 이 SQL 을 미리 준비(prepare)하므로 리포지토리와 어긋나지 않는다.
+ */
+public abstract class MemberSql {
+
+    public static final String INSERT = "insert into member(member_id, money) values(?, ?)";
+    public static final String FIND_BY_ID = "select * from member where member_id = ?";
+    public static final String UPDATE = "update member set money = ? where member_id = ?";
+    public static final String DELETE = "delete from member where member_id = ?";
+    public static final String MERGE = "merge into member(member_id, money) key(member_id) values(?, ?)";
+    public static final String ADD_MONEY = "update member set money = money + ? where member_id = ?";
+    public static final String SUBTRACT_MONEY_IF_SUFFICIENT = "update member set money = money - ? where member_id = ? and money >= ?";
+
+    // 두 회원이 다 있고 잔액이 충분할 때만 두 행을 바꾼다. 아니면 어떤 행도 바꾸지 않는다.
+    // money 가 0 이하면 어떤 행도 바꾸지 않는다. (음수면 출금과 입금이 뒤바뀐다.)
+    // 출금 행의 잔액은 잠근 행에서 한 번 더 확인하므로 동시에 출금해도 음수가 되지 않는다.
+    // 하지만 서브쿼리는 문장 시작 시점의 스냅샷을 읽는다. 같은 회원에서 동시에 출금하면 뒤의 문장은 출금 행을 건너뛰고
+    // 입금 행만 바꿔서 1 을 돌려줄 수 있다. 그래서 트랜잭션 안에서 실행하고 2 가 아니면 롤백해야 한다.
+    // 파라미터 - fromId, money, toId, money, fromId, toId, fromId, money, money, fromId, toId, fromId, money
+    public static final String TRANSFER = "update member set money = case member_id when ? then money - ? when ? then money + ? end"
+            + " where member_id in (?, ?) and (member_id <> ? or money >= ?) and ? > 0"
+            + " and (select count(*) from member where member_id in (?, ?)) = 2"
+            + " and (select money from member where member_id = ?) >= ?";
+
+    public static final List<String> ALL = List.of(INSERT, FIND_BY_ID, UPDATE, DELETE, MERGE, ADD_MONEY, SUBTRACT_MONEY_IF_SUFFICIENT, TRANSFER);
+}
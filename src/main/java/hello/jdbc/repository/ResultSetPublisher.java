@@ -0,0 +1,186 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ *  쿼리 결과를 Flow.Publisher 로 내보낸다. (ResultSetStream 의 Flow 버전)
+ *
+ *  - 구독할 때마다 쿼리를 새로 실행한다. 커넥션은 처음 request() 가 왔을 때 연다.
+ *  - 구독자가 request(n) 한 만큼만 rs.next() 를 호출한다. 요청이 없으면 읽지 않으므로
+ *    구독자가 느려도 메모리에는 드라이버의 fetch size 만큼만 올라온다.
+ *  - 완료, 에러, cancel() 때 ResultSet, Statement, 커넥션을 정리한다.
+ *  - DB 작업과 구독자 호출(onNext 등)은 executor 에서 한 번에 하나씩만 실행한다.
+ */
+@Slf4j
+final class ResultSetPublisher<T> implements Flow.Publisher<T> {
+
+    /**
+     *  쿼리를 실행해서 열린 ResultSet 과 정리 작업을 돌려준다. 실패하면 열었던 자원을 직접 정리하고 예외를 던진다.
+     */
+    @FunctionalInterface
+    interface Query {
+        Cursor open() throws SQLException;
+    }
+
+    static final class Cursor {
+        private final ResultSet rs;
+        private final Runnable onClose;
+
+        Cursor(ResultSet rs, Runnable onClose) {
+            this.rs = rs;
+            this.onClose = onClose;
+        }
+    }
+
+    private final Query query;
+    private final RowMapper<T> rowMapper;
+    private final Function<SQLException, RuntimeException> translator;
+    private final Executor executor;
+
+    ResultSetPublisher(Query query, RowMapper<T> rowMapper,
+                       Function<SQLException, RuntimeException> translator, Executor executor) {
+        this.query = query;
+        this.rowMapper = rowMapper;
+        this.translator = translator;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        RowSubscription subscription = new RowSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private final class RowSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // drain() 을 실행 중이거나 실행해야 하는 횟수 - 0 에서 올린 스레드만 drain 을 실행한다.
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable pendingError;
+
+        // 아래는 drain() 안에서만 접근한다.
+        private Cursor cursor;
+        private int rowNum;
+        private boolean done;
+
+        RowSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                pendingError = new IllegalArgumentException("request must be positive, n = " + n);
+            } else {
+                demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                pendingError = e;
+                drain();
+            }
+        }
+
+        private void drain() {
+            int missed = wip.get();
+            do {
+                if (!done) {
+                    emit();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            if (cancelled) {
+                finish();
+                return;
+            }
+            Throwable error = pendingError;
+            if (error != null) {
+                finish();
+                subscriber.onError(error);
+                return;
+            }
+            try {
+                if (cursor == null) {
+                    cursor = query.open();
+                }
+                while (demand.get() > 0) {
+                    if (cancelled) {
+                        finish();
+                        return;
+                    }
+                    if (!cursor.rs.next()) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    T item = rowMapper.mapRow(cursor.rs, rowNum++);
+                    if (!onNext(item)) {
+                        return;
+                    }
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                }
+            } catch (SQLException e) {
+                finish();
+                subscriber.onError(translator.apply(e));
+            } catch (RuntimeException e) {
+                finish();
+                subscriber.onError(e);
+            }
+        }
+
+        private boolean onNext(T item) {
+            try {
+                subscriber.onNext(item);
+                return true;
+            } catch (Throwable e) {
+                // onNext 가 예외를 던지면 구독이 취소된 것으로 본다. (Reactive Streams 2.13)
+                log.warn("subscriber.onNext threw, cancelling subscription", e);
+                cancelled = true;
+                finish();
+                return false;
+            }
+        }
+
+        private void finish() {
+            done = true;
+            if (cursor != null) {
+                cursor.onClose.run();
+                cursor = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package hello.jdbc.repository;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  열려 있는 ResultSet 을 Stream 으로 감싼다.
+ *  요소를 꺼낼 때마다 rs.next() 를 호출하므로 한 번에 메모리에 올라오는 행은 드라이버의 fetch size 만큼이다.
+ *  단, 드라이버가 fetch size 를 지킬 때 얘기다. 임베디드 H2 는 URL 에 LAZY_QUERY_EXECUTION=TRUE 가 있어야
+ *  조금씩 읽고, 없으면 결과 전체를 메모리에 만든 뒤에 돌려준다. (ConnectionConst 의 mem, file 모드는 켜져 있다.)
+ *  Stream.close() 가 onClose 를 호출해서 ResultSet, Statement, 커넥션을 정리한다.
+ */
+final class ResultSetStream {
+
+    // 한 번에 DB 에서 가져올 행 수
+    static final int FETCH_SIZE = 500;
+
+    private ResultSetStream() {
+    }
+
+    static <T> Stream<T> of(ResultSet rs, RowMapper<T> rowMapper,
+                            Function<SQLException, RuntimeException> translator, Runnable onClose) {
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private int rowNum;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(rowMapper.mapRow(rs, rowNum++));
+                    return true;
+                } catch (SQLException e) {
+                    throw translator.apply(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(onClose);
+    }
+}
@@ -0,0 +1,415 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.MemberPage;
+import hello.jdbc.repository.ex.BatchUpdateDataAccessException;
+import hello.jdbc.repository.ex.BatchUpdateFailure;
+import hello.jdbc.repository.ex.BatchUpdateFailure.RowFailure;
+import hello.jdbc.repository.ex.MyBatchUpdateException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+
+/**
+ *  memberId 의 해시로 여러 DB(샤드)에 나눠 저장하는 MemberRepository
+ *  샤드마다 DataSource(각자의 커넥션 풀)를 하나씩 받고, 한 건 단위 작업은 MemberRepositoryV5 에 맡긴다.
+ *
+ *  - 일관된 해시(consistent hashing) - 샤드마다 가상 노드를 링에 여러 개 올려 두고
+ *    memberId 의 해시보다 크거나 같은 첫 노드의 샤드로 보낸다. 샤드를 하나 늘려도 약 1/N 의 회원만 옮겨진다.
+ *  - 테이블 전체 작업은 scatterGather() 로 모든 샤드에 동시에 보내고 결과를 모은다.
+ */
+@Slf4j
+public class ShardedMemberRepository implements MemberRepository, AutoCloseable {
+
+    static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final List<MemberRepository> repositories = new ArrayList<>();
+    private final List<JdbcTemplate> templates = new ArrayList<>();
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+    private final ExecutorService executor;
+
+    public ShardedMemberRepository(List<DataSource> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ShardedMemberRepository(List<DataSource> shards, int virtualNodes) {
+        if (shards.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("shards = " + shards.size() + ", virtualNodes = " + virtualNodes);
+        }
+        for (int shard = 0; shard < shards.size(); shard++) {
+            repositories.add(new MemberRepositoryV5(shards.get(shard)));
+            templates.add(new JdbcTemplate(shards.get(shard)));
+            for (int node = 0; node < virtualNodes; node++) {
+                ring.put(hash("shard-" + shard + "#" + node), shard);
+            }
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(shards.size(), r -> {
+            Thread thread = new Thread(r, "member-shard-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Member save(Member member) {
+        return shardFor(member.getMemberId()).save(member);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return shardFor(memberId).findById(memberId);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        shardFor(memberId).update(memberId, money);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        shardFor(memberId).delete(memberId);
+    }
+
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+        return shardFor(memberId).addMoney(memberId, delta);
+    }
+
+    @Override
+    public boolean subtractMoneyIfSufficient(String memberId, int amount) {
+        return shardFor(memberId).subtractMoneyIfSufficient(memberId, amount);
+    }
+
+    /**
+     *  두 회원이 같은 샤드에 있을 때만 한 문장으로 처리할 수 있다.
+     */
+    @Override
+    public int transferMoney(String fromId, String toId, int money) {
+        int shard = shardIndex(fromId);
+        if (shard != shardIndex(toId)) {
+            throw new IllegalArgumentException("cross-shard transfer is not supported, fromId = " + fromId + ", toId = " + toId);
+        }
+        return repositories.get(shard).transferMoney(fromId, toId, money);
+    }
+
+    @Override
+    public boolean transferMoneyInDatabase(String fromId, String toId, int money) {
+        int shard = shardIndex(fromId);
+        if (shard != shardIndex(toId)) {
+            throw new IllegalArgumentException("cross-shard transfer is not supported, fromId = " + fromId + ", toId = " + toId);
+        }
+        return repositories.get(shard).transferMoneyInDatabase(fromId, toId, money);
+    }
+
+    @Override
+    public Member saveOrUpdate(Member member) {
+        return shardFor(member.getMemberId()).saveOrUpdate(member);
+    }
+
+    /**
+     *  샤드별로 나눠서 각 샤드의 saveAll 로 저장한다. 샤드 안에서는 원래 순서를 지킨다.
+     *  실패하면 샤드가 던진 배치 예외의 행 번호를 members 의 순서로 바꿔서 같은 종류의 예외로 던진다.
+     *  샤드는 차례로 처리하므로 completedRows 는 앞 샤드에서 끝난 행과 실패한 샤드에서 끝난 행을 더한 수다.
+     */
+    @Override
+    public void saveAll(Collection<Member> members, int batchSize) {
+        forEachShard(members, (repository, shardMembers) -> repository.saveAll(shardMembers, batchSize));
+    }
+
+    @Override
+    public void saveOrUpdateAll(Collection<Member> members, int batchSize) {
+        forEachShard(members, (repository, shardMembers) -> repository.saveOrUpdateAll(shardMembers, batchSize));
+    }
+
+    private void forEachShard(Collection<Member> members, BiConsumer<MemberRepository, List<Member>> batch) {
+        List<List<Member>> byShard = new ArrayList<>();
+        List<List<Integer>> indexesByShard = new ArrayList<>();
+        for (int shard = 0; shard < repositories.size(); shard++) {
+            byShard.add(new ArrayList<>());
+            indexesByShard.add(new ArrayList<>());
+        }
+        int index = 0;
+        for (Member member : members) {
+            int shard = shardIndex(member.getMemberId());
+            byShard.get(shard).add(member);
+            indexesByShard.get(shard).add(index++);
+        }
+
+        int completedRows = 0;
+        for (int shard = 0; shard < repositories.size(); shard++) {
+            if (byShard.get(shard).isEmpty()) {
+                continue;
+            }
+            try {
+                batch.accept(repositories.get(shard), byShard.get(shard));
+            } catch (RuntimeException e) {
+                throw toCallerOrder(e, shard, indexesByShard.get(shard), completedRows);
+            }
+            completedRows += byShard.get(shard).size();
+        }
+    }
+
+    /**
+     *  샤드별로 나눠서 각 샤드의 updateAll 로 변경하고, 변경 건수를 moneyByMemberId 의 순서로 되돌려 놓는다.
+     */
+    @Override
+    public int[] updateAll(Map<String, Integer> moneyByMemberId, int batchSize) {
+        List<Map<String, Integer>> byShard = new ArrayList<>();
+        List<List<Integer>> indexesByShard = new ArrayList<>();
+        for (int shard = 0; shard < repositories.size(); shard++) {
+            byShard.add(new LinkedHashMap<>());
+            indexesByShard.add(new ArrayList<>());
+        }
+        int index = 0;
+        for (Map.Entry<String, Integer> entry : moneyByMemberId.entrySet()) {
+            int shard = shardIndex(entry.getKey());
+            byShard.get(shard).put(entry.getKey(), entry.getValue());
+            indexesByShard.get(shard).add(index++);
+        }
+
+        int[] counts = new int[moneyByMemberId.size()];
+        int completedRows = 0;
+        for (int shard = 0; shard < repositories.size(); shard++) {
+            if (byShard.get(shard).isEmpty()) {
+                continue;
+            }
+            int[] shardCounts;
+            try {
+                shardCounts = repositories.get(shard).updateAll(byShard.get(shard), batchSize);
+            } catch (RuntimeException e) {
+                throw toCallerOrder(e, shard, indexesByShard.get(shard), completedRows);
+            }
+            List<Integer> indexes = indexesByShard.get(shard);
+            for (int i = 0; i < shardCounts.length; i++) {
+                counts[indexes.get(i)] = shardCounts[i];
+            }
+            completedRows += shardCounts.length;
+        }
+        return counts;
+    }
+
+    /**
+     *  샤드 안의 행 번호를 호출한 쪽의 순서로 바꾸고, 앞 샤드에서 끝난 행 수(completedBefore)를 completedRows 에 더한다.
+     *  배치 예외가 아니면 그대로 돌려준다.
+     */
+    private RuntimeException toCallerOrder(RuntimeException e, int shard, List<Integer> indexes, int completedBefore) {
+        if (!(e instanceof BatchUpdateFailure batchFailure)) {
+            return e;
+        }
+        List<RowFailure> failures = batchFailure.getFailures().stream()
+                .map(failure -> new RowFailure(indexes.get(failure.getIndex()), failure.getMember(), failure.getCause()))
+                .toList();
+        String message = "batch failed on shard " + shard + ", " + e.getMessage();
+        int completedRows = completedBefore + batchFailure.getCompletedRows();
+        if (e instanceof MyBatchUpdateException) {
+            return new MyBatchUpdateException(message, e, completedRows, failures);
+        }
+        return new BatchUpdateDataAccessException(message, e, completedRows, failures);
+    }
+
+    /**
+     *  샤드별로 id 를 나눠서 각 샤드의 findAllById 로 조회한다.
+     *  executor 를 주면 샤드들도 동시에 조회한다.
+     */
+    @Override
+    public Map<String, Member> findAllById(Collection<String> memberIds, Executor executor) {
+        Map<Integer, List<String>> idsByShard = new TreeMap<>();
+        for (String memberId : memberIds) {
+            idsByShard.computeIfAbsent(shardIndex(memberId), shard -> new ArrayList<>()).add(memberId);
+        }
+
+        Map<String, Member> found = new HashMap<>();
+        if (executor == null || idsByShard.size() < 2) {
+            idsByShard.forEach((shard, ids) -> found.putAll(repositories.get(shard).findAllById(ids, null)));
+            return found;
+        }
+        List<Future<Map<String, Member>>> futures = new ArrayList<>();
+        idsByShard.forEach((shard, ids) -> futures.add(this.executor.submit(() -> repositories.get(shard).findAllById(ids, executor))));
+        for (Map<String, Member> members : await(futures)) {
+            found.putAll(members);
+        }
+        return found;
+    }
+
+    /**
+     *  샤드를 하나씩 차례로 읽는다. 커넥션은 읽고 있는 샤드의 것 하나만 잡는다.
+     *  flatMap 은 iterator(), spliterator() 로 읽으면 샤드 하나의 결과를 통째로 버퍼에 담으므로
+     *  앞 샤드를 다 읽었을 때 다음 샤드의 stream 을 여는 ShardSpliterator 로 이어 붙인다.
+     */
+    @Override
+    public Stream<Member> streamAll() {
+        ShardSpliterator spliterator = new ShardSpliterator(repositories);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    private static final class ShardSpliterator extends Spliterators.AbstractSpliterator<Member> {
+
+        private final Iterator<MemberRepository> shards;
+        private Stream<Member> current;
+        private Spliterator<Member> currentSpliterator;
+
+        ShardSpliterator(List<MemberRepository> repositories) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.shards = repositories.iterator();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Member> action) {
+            while (true) {
+                if (currentSpliterator != null && currentSpliterator.tryAdvance(action)) {
+                    return true;
+                }
+                // 다 읽은 샤드는 바로 닫아서 커넥션을 반환한 뒤 다음 샤드를 연다.
+                close();
+                if (!shards.hasNext()) {
+                    return false;
+                }
+                current = shards.next().streamAll();
+                currentSpliterator = current.spliterator();
+            }
+        }
+
+        void close() {
+            if (current != null) {
+                Stream<Member> closing = current;
+                current = null;
+                currentSpliterator = null;
+                closing.close();
+            }
+        }
+    }
+
+    /**
+     *  샤드마다 afterMemberId 다음 limit 개를 조회해서 member_id 순서로 합친 뒤 앞에서부터 limit 개를 자른다.
+     */
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE + ", limit = " + limit);
+        }
+        List<Future<MemberPage>> futures = new ArrayList<>();
+        for (MemberRepository repository : repositories) {
+            futures.add(executor.submit(() -> repository.findPage(afterMemberId, limit)));
+        }
+        List<Member> merged = new ArrayList<>();
+        boolean shardHasNext = false;
+        for (MemberPage page : await(futures)) {
+            merged.addAll(page.getMembers());
+            shardHasNext |= page.hasNext();
+        }
+        merged.sort(Comparator.comparing(Member::getMemberId));
+        MemberPage page = MemberPage.of(merged, limit);
+        if (!page.hasNext() && shardHasNext) {
+            return new MemberPage(page.getMembers(), merged.get(merged.size() - 1).getMemberId());
+        }
+        return page;
+    }
+
+    /**
+     *  모든 회원 (샤드 순서대로 모은다)
+     */
+    public List<Member> findAll() {
+        List<Member> members = new ArrayList<>();
+        scatterGather(template -> template.query("select * from member",
+                (rs, rowNum) -> new Member(rs.getString("member_id"), rs.getInt("money"))))
+                .forEach(members::addAll);
+        return members;
+    }
+
+    public long count() {
+        return scatterGather(template -> template.queryForObject("select count(*) from member", Long.class))
+                .stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     *  모든 샤드에 같은 작업을 동시에 실행하고 샤드 순서대로 결과를 돌려준다.
+     *  하나라도 실패하면 그 예외를 그대로 던진다.
+     */
+    public <T> List<T> scatterGather(Function<JdbcTemplate, T> operation) {
+        List<Future<T>> futures = new ArrayList<>();
+        for (JdbcTemplate template : templates) {
+            futures.add(executor.submit(() -> operation.apply(template)));
+        }
+        return await(futures);
+    }
+
+    private <T> List<T> await(List<Future<T>> futures) {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("scatter-gather interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    public int getShardCount() {
+        return repositories.size();
+    }
+
+    int shardIndex(String memberId) {
+        Map.Entry<Long, Integer> node = ring.ceilingEntry(hash(memberId));
+        return node == null ? ring.firstEntry().getValue() : node.getValue();
+    }
+
+    private MemberRepository shardFor(String memberId) {
+        return repositories.get(shardIndex(memberId));
+    }
+
+    /**
+     *  CRC32 는 비슷한 문자열끼리 값이 몰리므로 비트를 한 번 더 섞어서 링 위에 고르게 흩어지게 한다.
+     */
+    private static long hash(String key) {
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        long h = crc.getValue();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,24 @@
+package hello.jdbc.repository.ex;
+
+import lombok.Getter;
+import org.springframework.dao.DataAccessException;
+
+import java.util.List;
+
+/**
+ *  배치 실행 중 일부 행이 실패한 예외 (V4_2, V5)
+ *  스프링 예외 추상화를 쓰는 리포지토리는 배치 실패도 DataAccessException 으로 던진다.
+ *  실패한 행마다 원래 순서(index), 회원, 변환된 예외(DuplicateKeyException 등)를 담는다.
+ */
+@Getter
+public class BatchUpdateDataAccessException extends DataAccessException implements BatchUpdateFailure {
+
+    private final int completedRows;
+    private final List<RowFailure> failures;
+
+    public BatchUpdateDataAccessException(String message, Throwable cause, int completedRows, List<RowFailure> failures) {
+        super(message, cause);
+        this.completedRows = completedRows;
+        this.failures = List.copyOf(failures);
+    }
+}
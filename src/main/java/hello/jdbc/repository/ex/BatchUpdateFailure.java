@@ -0,0 +1,30 @@
+package hello.jdbc.repository.ex;
+
+import hello.jdbc.domain.Member;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ *  배치 실행 중 일부 행이 실패했을 때 예외가 함께 알려주는 정보
+ *  V4_1 은 MyBatchUpdateException, 스프링 예외 추상화를 쓰는 V4_2, V5 는 BatchUpdateDataAccessException 으로 던진다.
+ */
+public interface BatchUpdateFailure {
+
+    /**
+     *  실패한 청크 앞에서 끝난 행 수 - 트랜잭션 밖이면 이미 커밋되었다.
+     */
+    int getCompletedRows();
+
+    /**
+     *  실패한 행마다 원래 순서(index), 회원, 변환된 예외(MyDuplicateKeyException, DuplicateKeyException 등)
+     */
+    List<RowFailure> getFailures();
+
+    @Value
+    class RowFailure {
+        int index;
+        Member member;
+        RuntimeException cause;
+    }
+}
@@ -0,0 +1,23 @@
+package hello.jdbc.repository.ex;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ *  배치 실행 중 일부 행이 실패한 예외 (V4_1)
+ *  실패한 행마다 원래 순서(index), 회원, 변환된 예외(MyDuplicateKeyException 등)를 담는다.
+ *  completedRows 는 실패한 청크 앞에서 끝난 행 수 - 트랜잭션 밖이면 이미 커밋되었다.
+ */
+@Getter
+public class MyBatchUpdateException extends MyDbException implements BatchUpdateFailure {
+
+    private final int completedRows;
+    private final List<RowFailure> failures;
+
+    public MyBatchUpdateException(String message, Throwable cause, int completedRows, List<RowFailure> failures) {
+        super(message, cause);
+        this.completedRows = completedRows;
+        this.failures = List.copyOf(failures);
+    }
+}
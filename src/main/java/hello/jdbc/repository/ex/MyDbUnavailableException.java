@@ -0,0 +1,24 @@
+package hello.jdbc.repository.ex;
+
+/**
+ *  DB 를 사용할 수 없어서 바로 실패한 예외
+ *  서킷 브레이커가 열려 있거나 동시 사용 한도(bulkhead)가 차서 DB 에 가지 않았다.
+ *  잠시 후 다시 시도하거나 대체 응답을 주면 된다.
+ */
+public class MyDbUnavailableException extends MyDbException {
+
+    public MyDbUnavailableException() {
+    }
+
+    public MyDbUnavailableException(String message) {
+        super(message);
+    }
+
+    public MyDbUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public MyDbUnavailableException(Throwable cause) {
+        super(cause);
+    }
+}
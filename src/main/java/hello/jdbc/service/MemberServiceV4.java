@@ -1,12 +1,16 @@
 package hello.jdbc.service;
 
+import hello.jdbc.connection.Deadline;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepository;
 import hello.jdbc.repository.MemberRepositoryV3;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.SQLException;
+import java.time.Duration;
 
 /**
  *  예외 누수 문제 해결
@@ -14,14 +18,36 @@ import java.sql.SQLException;
  *
  *  MemberRepository 인터페이스에 의존
  *  트랜잭션 - @Transaction AOP
+ *
+ *  TransferMode.ATOMIC - 조회 없이 subtractMoneyIfSufficient(), addMoney() 두 문장으로 이체한다.
+ *  잔액 계산을 DB 가 하므로 동시에 이체해도 변경이 사라지지 않고(lost update), 더 높은 격리 수준이 필요 없다.
  */
 @Slf4j
 public class MemberServiceV4 {
 
+    public enum TransferMode {
+        READ_MODIFY_WRITE, // findById 후 update
+        ATOMIC
+    }
+
     private final MemberRepository memberRepository;
+    private final TransferMode transferMode;
+    private final TransactionTemplate txTemplate; // timeout 이 있는 accountTransfer 용, 없으면 null
 
     public MemberServiceV4(MemberRepository  memberRepository) {
+        this(memberRepository, TransferMode.READ_MODIFY_WRITE);
+    }
+
+    public MemberServiceV4(MemberRepository memberRepository, TransferMode transferMode) {
         this.memberRepository = memberRepository;
+        this.transferMode = transferMode;
+        this.txTemplate = null;
+    }
+
+    public MemberServiceV4(MemberRepository memberRepository, TransferMode transferMode, PlatformTransactionManager transactionManager) {
+        this.memberRepository = memberRepository;
+        this.transferMode = transferMode;
+        this.txTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Transactional
@@ -32,17 +58,68 @@ public class MemberServiceV4 {
         bizLogic(fromId, toId, money);
     }
 
+    /**
+     *  timeout 안에 끝나지 않으면 DataAccessException(원인은 SQLTimeoutException)으로 롤백한다.
+     *  커넥션을 얻는 동안 timeout 이 지나면 CannotCreateTransactionException(원인은 SQLTimeoutException)으로 실패한다.
+     *  마감 시각을 먼저 정하고 그 안에서 트랜잭션을 시작하므로, 트랜잭션 커넥션을 얻는 대기도 timeout 에 들어간다.
+     *  (@Transactional 이면 커넥션을 얻은 뒤에야 이 메서드에 들어오므로 TransactionTemplate 으로 직접 시작한다.)
+     *  남은 시간은 DeadlineDataSource 가 커넥션 대기 시간과 쿼리 타임아웃으로 사용한다.
+     */
+    public void accountTransfer(String fromId, String toId, int money, Duration timeout) {
+        if (txTemplate == null) {
+            throw new IllegalStateException("timeout 이 있는 이체는 PlatformTransactionManager 를 받은 생성자로 만들어야 한다.");
+        }
+        Deadline.within(timeout, () -> txTemplate.executeWithoutResult(status -> bizLogic(fromId, toId, money)));
+    }
+
     private void bizLogic(String fromId, String toId, int money) {
+        if (transferMode == TransferMode.ATOMIC) {
+            atomicBizLogic(fromId, toId, money);
+            return;
+        }
         Member fromMember = memberRepository.findById(fromId);
         Member toMember = memberRepository.findById(toId);
 
         memberRepository.update(fromId, fromMember.getMoney() - money);
-        validation(toMember);
+        validation(toMember.getMemberId());
         memberRepository.update(toId, toMember.getMoney() + money);
     }
 
-    private void validation(Member toMember) {
-        if (toMember.getMemberId().equals("ex")) {
+    /**
+     *  두 행을 항상 member_id 순서로 잠근다.
+     *  A->B, B->A 이체가 동시에 서로 반대 순서로 잠그면 데드락이 나기 때문이다.
+     *  어느 쪽이 실패해도 런타임 예외라 트랜잭션 전체가 롤백된다.
+     *  금액이 0 이하면 출금이 입금으로 바뀌므로 문장을 실행하기 전에 거절한다.
+     */
+    private void atomicBizLogic(String fromId, String toId, int money) {
+        if (money <= 0) {
+            throw new IllegalArgumentException("money must be positive, money = " + money);
+        }
+        if (fromId.compareTo(toId) < 0) {
+            withdraw(fromId, money);
+            validation(toId);
+            deposit(toId, money);
+        } else {
+            deposit(toId, money);
+            validation(toId);
+            withdraw(fromId, money);
+        }
+    }
+
+    private void withdraw(String fromId, int money) {
+        if (!memberRepository.subtractMoneyIfSufficient(fromId, money)) {
+            throw new IllegalStateException("잔액 부족 또는 없는 회원 fromId = " + fromId + ", money = " + money);
+        }
+    }
+
+    private void deposit(String toId, int money) {
+        if (!memberRepository.addMoney(toId, money)) {
+            throw new IllegalStateException("없는 회원 toId = " + toId);
+        }
+    }
+
+    private void validation(String toId) {
+        if (toId.equals("ex")) {
             throw new IllegalStateException("이체중 예외 발생 ");
         }
     }
@@ -0,0 +1,46 @@
+package hello.jdbc.service;
+
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ *  update 한 문장으로 이체
+ *  MemberRepository.transferMoney() 가 출금, 입금을 CASE 로 한 번에 처리한다. (조회 2번, update 2번 -> update 1번)
+ *  잔액이 부족하거나 회원이 없으면 어떤 행도 바뀌지 않는다.
+ *  같은 회원에서 동시에 출금하면 입금 행만 바뀔 수 있으므로 바뀐 행이 2개가 아니면 예외를 던지고 롤백한다.
+ */
+@Slf4j
+public class MemberServiceV5 {
+
+    private final MemberRepository memberRepository;
+
+    public MemberServiceV5(MemberRepository memberRepository) {
+        this.memberRepository = memberRepository;
+    }
+
+    @Transactional
+    public void accountTransfer(String fromId, String toId, int money) {
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("같은 회원에게 이체할 수 없다. memberId = " + fromId);
+        }
+        if (money <= 0) {
+            throw new IllegalArgumentException("money must be positive, money = " + money);
+        }
+        validation(toId);
+        int resultSize = memberRepository.transferMoney(fromId, toId, money);
+        if (resultSize == 0) {
+            throw new IllegalStateException("잔액 부족 또는 없는 회원 fromId = " + fromId + ", toId = " + toId);
+        }
+        if (resultSize != 2) {
+            // 입금만 된 경우이므로 롤백해야 한다.
+            throw new IllegalStateException("이체는 두 행을 바꿔야 한다. fromId = " + fromId + ", toId = " + toId + ", resultSize = " + resultSize);
+        }
+    }
+
+    private void validation(String toId) {
+        if (toId.equals("ex")) {
+            throw new IllegalStateException("이체중 예외 발생 ");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package hello.jdbc.service;
+
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ *  DB 함수로 이체
+ *  MemberRepository.transferMoneyInDatabase() 가 CALL TRANSFER_MONEY(...) 한 번으로 잔액 확인, 출금, 입금을 처리한다.
+ *  DB 안에서 한 문장으로 끝나므로 @Transactional 이 없다. (트랜잭션 시작, 커밋 왕복이 없다.)
+ *  실패하면 DB 는 아무것도 바꾸지 않았으므로 롤백할 것이 없다.
+ */
+@Slf4j
+public class MemberServiceV6 {
+
+    private final MemberRepository memberRepository;
+
+    public MemberServiceV6(MemberRepository memberRepository) {
+        this.memberRepository = memberRepository;
+    }
+
+    public void accountTransfer(String fromId, String toId, int money) {
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("같은 회원에게 이체할 수 없다. memberId = " + fromId);
+        }
+        if (money <= 0) {
+            throw new IllegalArgumentException("money must be positive, money = " + money);
+        }
+        if (!memberRepository.transferMoneyInDatabase(fromId, toId, money)) {
+            throw new IllegalStateException("잔액 부족 또는 없는 회원 fromId = " + fromId + ", toId = " + toId);
+        }
+    }
+}
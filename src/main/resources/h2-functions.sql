@@ -0,0 +1,44 @@
+-- 이체 함수 - CALL TRANSFER_MONEY(fromId, toId, money)
+-- 두 회원 행을 member_id 순서로 잠그고, 둘 다 있고 잔액이 충분할 때만 출금, 입금을 한 번에 반영한다.
+-- 이체했으면 1, 금액이 0 이하거나 같은 회원이거나 없는 회원이거나 잔액이 부족하면 아무것도 바꾸지 않고 0 을 돌려준다.
+-- 소스 코드를 DB 안에서 컴파일하므로 애플리케이션 클래스가 없는 H2 서버(tcp)에도 등록할 수 있다.
+-- schema.sql 을 통해 물리 커넥션마다 다시 실행되므로 if not exists 로 한 번만 만든다.
+-- 소스를 바꾸면 애플리케이션 시작 시 H2Functions.register() 가 예전 함수를 지우고 다시 만든다.
+create alias if not exists TRANSFER_MONEY as $$
+import java.sql.*;
+@CODE
+int transferMoney(Connection con, String fromId, String toId, int money) throws SQLException {
+    // 음수 금액은 toId 에서 fromId 로 돈을 옮기게 된다.
+    if (money <= 0 || fromId.equals(toId)) {
+        return 0;
+    }
+    int found = 0;
+    int fromMoney = 0;
+    try (PreparedStatement pstmt = con.prepareStatement(
+            "select member_id, money from member where member_id in (?, ?) order by member_id for update")) {
+        pstmt.setString(1, fromId);
+        pstmt.setString(2, toId);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                found++;
+                if (rs.getString(1).equals(fromId)) {
+                    fromMoney = rs.getInt(2);
+                }
+            }
+        }
+    }
+    if (found != 2 || fromMoney < money) {
+        return 0;
+    }
+    try (PreparedStatement pstmt = con.prepareStatement(
+            "update member set money = case member_id when ? then money - ? else money + ? end where member_id in (?, ?)")) {
+        pstmt.setString(1, fromId);
+        pstmt.setInt(2, money);
+        pstmt.setInt(3, money);
+        pstmt.setString(4, fromId);
+        pstmt.setString(5, toId);
+        pstmt.executeUpdate();
+    }
+    return 1;
+}
+$$;
@@ -0,0 +1,8 @@
+-- INIT=RUNSCRIPT 로 물리 커넥션을 열 때마다 실행된다. 모든 문장은 여러 번 실행해도 되어야 한다. (if not exists)
+create table if not exists member (
+    member_id varchar(10),
+    money integer not null default 0,
+    primary key (member_id)
+);
+
+runscript from 'classpath:h2-functions.sql';
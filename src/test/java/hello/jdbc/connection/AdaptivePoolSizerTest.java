@@ -0,0 +1,128 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class AdaptivePoolSizerTest {
+
+    ConnectionPool pool;
+    MeteredDataSource dataSource;
+    AdaptivePoolSizer sizer;
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:adaptive;DB_CLOSE_DELAY=-1");
+        config.setMinSize(1);
+        config.setMaxSize(2);
+        pool = new ConnectionPool(config);
+        dataSource = new MeteredDataSource(pool);
+        sizer = new AdaptivePoolSizer(dataSource, AdaptivePoolSizer.resizerFor(dataSource, 2),
+                1, 8, Duration.ofMillis(1), Duration.ZERO);
+    }
+
+    @AfterEach
+    void afterEach() {
+        sizer.close();
+        pool.close();
+    }
+
+    @Test
+    void growUnderLoadAndShrinkWhenIdle() throws InterruptedException {
+        load(8);
+        PoolSizeDecision grow = sizer.adjust();
+        log.info("grow = {}", grow);
+
+        // 커넥션 2개를 8 스레드가 나눠 쓰느라 대기가 생겼으므로 키운다.
+        assertThat(grow.getAcquireWaitMillis()).isGreaterThan(1);
+        assertThat(grow.getNewSize()).isGreaterThan(2);
+        assertThat(pool.getMaxSize()).isEqualTo(grow.getNewSize());
+
+        Thread.sleep(50);
+        PoolSizeDecision shrink = sizer.adjust();
+        log.info("shrink = {}", shrink);
+
+        // 요청이 없으면 한 단계씩 줄인다.
+        assertThat(shrink.getArrivalRatePerSecond()).isZero();
+        assertThat(shrink.getNewSize()).isLessThan(grow.getNewSize());
+        assertThat(pool.getMaxSize()).isEqualTo(shrink.getNewSize());
+
+        assertThat(sizer.getDecisions()).containsExactly(grow, shrink);
+        assertThat(sizer.getGrowCount()).isEqualTo(1);
+        assertThat(sizer.getShrinkCount()).isEqualTo(1);
+    }
+
+    @Test
+    void littlesLaw() throws InterruptedException {
+        load(1);
+        PoolSizeDecision decision = sizer.adjust();
+
+        // 한 스레드가 순서대로 쓰면 동시에 사용하는 커넥션은 1개 이하
+        assertThat(decision.getTargetConcurrency()).isLessThanOrEqualTo(1.0);
+        assertThat(decision.getHoldTimeMillis()).isGreaterThanOrEqualTo(10);
+    }
+
+    @Test
+    void neverShrinkBelowPoolMinSize() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:adaptive;DB_CLOSE_DELAY=-1");
+        config.setMinSize(3);
+        config.setMaxSize(6);
+        try (ConnectionPool pool = new ConnectionPool(config);
+             AdaptivePoolSizer sizer = new AdaptivePoolSizer(new MeteredDataSource(pool),
+                     AdaptivePoolSizer.resizerFor(pool, 6), 1, 8, Duration.ofMillis(1), Duration.ZERO, 0.2, 8)) {
+            PoolSizeDecision shrink = sizer.adjust();
+
+            // 요청이 없어 한 번에 8개를 줄이려 해도 풀의 최소 크기(3)에서 멈춘다.
+            assertThat(shrink.getNewSize()).isEqualTo(3);
+            assertThat(pool.getMaxSize()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void rejectPoolMinSizeAboveMax() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:adaptive;DB_CLOSE_DELAY=-1");
+        config.setMinSize(4);
+        config.setMaxSize(4);
+        try (ConnectionPool pool = new ConnectionPool(config)) {
+            assertThatThrownBy(() -> new AdaptivePoolSizer(new MeteredDataSource(pool),
+                    AdaptivePoolSizer.resizerFor(pool, 4), 1, 2, Duration.ofMillis(1), Duration.ZERO))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private void load(int threads) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads * 5; i++) {
+            executor.submit(() -> {
+                try {
+                    Connection con = dataSource.getConnection();
+                    try {
+                        Thread.sleep(10); // SQL 실행 시간 대신
+                    } finally {
+                        con.close();
+                    }
+                } catch (SQLException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return null;
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+}
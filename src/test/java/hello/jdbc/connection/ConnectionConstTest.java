@@ -0,0 +1,53 @@
+package hello.jdbc.connection;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionConstTest {
+
+    @Test
+    void url() {
+        assertThat(ConnectionConst.url("tcp")).isEqualTo("jdbc:h2:tcp://localhost/~/test");
+        assertThat(ConnectionConst.url("mem")).startsWith("jdbc:h2:mem:").contains(LAZY_QUERY).endsWith(SCHEMA_INIT);
+        assertThat(ConnectionConst.url("file")).startsWith("jdbc:h2:file:").contains(LAZY_QUERY).endsWith(SCHEMA_INIT);
+        assertThatThrownBy(() -> ConnectionConst.url("oracle"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void memoryModeCreatesSchema() throws SQLException {
+        // H2 서버 없이 접속하고, member 테이블이 이미 있다.
+        try (Connection con = DriverManager.getConnection(ConnectionConst.url("mem"), USERNAME, PASSWORD);
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("select count(*) from member")) {
+            assertThat(rs.next()).isTrue();
+        }
+    }
+
+    @Test
+    void schemaInitRunsOnEveryConnection() throws SQLException {
+        // INIT 은 새 물리 커넥션마다 실행된다. 스크립트가 다시 실행돼도 실패하지 않고 데이터도 그대로다.
+        String url = "jdbc:h2:mem:schemaInit;DB_CLOSE_DELAY=-1" + SCHEMA_INIT;
+        try (Connection first = DriverManager.getConnection(url, USERNAME, PASSWORD);
+             Statement stmt = first.createStatement()) {
+            stmt.executeUpdate("insert into member(member_id, money) values('memberA', 10000)");
+        }
+        for (int i = 0; i < 2; i++) {
+            try (Connection con = DriverManager.getConnection(url, USERNAME, PASSWORD);
+                 Statement stmt = con.createStatement();
+                 ResultSet rs = stmt.executeQuery("select count(*) from member")) {
+                assertThat(rs.next()).isTrue();
+                assertThat(rs.getInt(1)).isEqualTo(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class ConnectionPoolTest {
+
+    ConnectionPool pool;
+
+    @AfterEach
+    void afterEach() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private ConnectionPoolConfig memoryConfig() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setPoolName("TestPool");
+        config.setUrl("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1");
+        config.setMinSize(0);
+        config.setMaxSize(2);
+        return config;
+    }
+
+    @Test
+    void reuse() throws SQLException {
+        pool = new ConnectionPool(memoryConfig());
+
+        Connection con1 = pool.getConnection();
+        Connection physical1 = con1.unwrap(Connection.class);
+        con1.close(); // 물리 커넥션을 닫지 않고 풀에 반납
+
+        Connection con2 = pool.getConnection();
+        log.info("con1 = {}, con2 = {}", con1, con2);
+        assertThat(con2.unwrap(Connection.class)).isSameAs(physical1);
+        assertThat(con1.isClosed()).isTrue();
+        assertThat(con2.isClosed()).isFalse();
+        assertThat(pool.getTotalConnections()).isEqualTo(1);
+        con2.close();
+    }
+
+    @Test
+    void acquireTimeout() throws SQLException {
+        ConnectionPoolConfig config = memoryConfig();
+        config.setAcquireTimeoutMillis(200);
+        pool = new ConnectionPool(config);
+
+        Connection con1 = pool.getConnection();
+        Connection con2 = pool.getConnection();
+
+        // maxSize 2 를 모두 빌려줬으므로 세번째는 타임아웃
+        assertThatThrownBy(() -> pool.getConnection())
+                .isInstanceOf(SQLTimeoutException.class);
+
+        con1.close();
+        Connection con3 = pool.getConnection();
+        assertThat(con3).isNotNull();
+        con2.close();
+        con3.close();
+    }
+
+    @Test
+    void returnedConnectionIsReset() throws SQLException {
+        pool = new ConnectionPool(memoryConfig());
+
+        Connection con1 = pool.getConnection();
+        con1.setAutoCommit(false);
+        con1.close();
+
+        Connection con2 = pool.getConnection();
+        assertThat(con2.getAutoCommit()).isTrue();
+        assertThatThrownBy(() -> con1.createStatement())
+                .isInstanceOf(SQLException.class);
+        con2.close();
+    }
+
+    @Test
+    void idleEviction() throws SQLException, InterruptedException {
+        ConnectionPoolConfig config = memoryConfig();
+        config.setMinSize(1);
+        config.setIdleTimeoutMillis(50);
+        config.setEvictionIntervalMillis(50);
+        pool = new ConnectionPool(config);
+
+        Connection con1 = pool.getConnection();
+        Connection con2 = pool.getConnection();
+        con1.close();
+        con2.close();
+        assertThat(pool.getIdleConnections()).isEqualTo(2);
+
+        Thread.sleep(500);
+
+        // minSize 만큼만 남는다.
+        assertThat(pool.getTotalConnections()).isEqualTo(1);
+        assertThat(pool.getIdleConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentAccess() throws InterruptedException {
+        ConnectionPoolConfig config = memoryConfig();
+        config.setMaxSize(4);
+        pool = new ConnectionPool(config);
+
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger maxBorrowed = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        for (int i = 0; i < 2_000; i++) {
+            executor.submit(() -> {
+                try (Connection con = pool.getConnection()) {
+                    maxBorrowed.accumulateAndGet(borrowed.incrementAndGet(), Math::max);
+                    con.isValid(1);
+                    borrowed.decrementAndGet();
+                } catch (SQLException e) {
+                    errors.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        // 동시에 maxSize 보다 많이 빌려주지 않는다.
+        assertThat(errors.get()).isZero();
+        assertThat(maxBorrowed.get()).isLessThanOrEqualTo(4);
+        assertThat(pool.getTotalConnections()).isLessThanOrEqualTo(4);
+        assertThat(pool.getActiveConnections()).isZero();
+    }
+
+    @Test
+    void statementCache() throws SQLException {
+        ConnectionPoolConfig config = memoryConfig();
+        config.setMaxSize(1);
+        pool = new ConnectionPool(config);
+
+        PreparedStatement physical;
+        try (Connection con = pool.getConnection()) {
+            PreparedStatement ps = con.prepareStatement("select ?");
+            ps.setInt(1, 1);
+            ps.setQueryTimeout(3);
+            ps.executeQuery().close();
+            physical = ps.unwrap(PreparedStatement.class);
+            ps.close();
+            assertThat(ps.isClosed()).isTrue();
+            assertThat(physical.isClosed()).isFalse(); // 캐시에 돌려놓았다.
+        }
+
+        // 다음에 빌린 커넥션에서 같은 SQL 은 같은 statement 를 다시 쓴다.
+        try (Connection con = pool.getConnection();
+             PreparedStatement ps = con.prepareStatement("select ?")) {
+            assertThat(ps.unwrap(PreparedStatement.class)).isSameAs(physical);
+            assertThat(ps.getQueryTimeout()).isZero(); // 바꾼 설정은 되돌린다.
+            assertThat(ps.getConnection()).isSameAs(con);
+        }
+        assertThat(pool.getStatementCacheHits()).isEqualTo(1);
+        assertThat(pool.getStatementCacheMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void statementCacheIsLru() throws SQLException {
+        ConnectionPoolConfig config = memoryConfig();
+        config.setMaxSize(1);
+        config.setStatementCacheSize(2);
+        pool = new ConnectionPool(config);
+
+        try (Connection con = pool.getConnection()) {
+            PreparedStatement first = prepareAndClose(con, "select 1");
+            PreparedStatement second = prepareAndClose(con, "select 2");
+            prepareAndClose(con, "select 1"); // select 1 을 최근에 사용
+            prepareAndClose(con, "select 3"); // 가장 오래 쓰지 않은 select 2 를 닫는다.
+
+            assertThat(first.isClosed()).isFalse();
+            assertThat(second.isClosed()).isTrue();
+        }
+    }
+
+    @Test
+    void evictedConnectionClosesStatements() throws Exception {
+        ConnectionPoolConfig config = memoryConfig();
+        config.setIdleTimeoutMillis(50);
+        config.setEvictionIntervalMillis(50);
+        pool = new ConnectionPool(config);
+
+        PreparedStatement physical;
+        try (Connection con = pool.getConnection()) {
+            physical = prepareAndClose(con, "select 1");
+        }
+        Thread.sleep(500);
+
+        // 물리 커넥션을 정리할 때 캐시된 statement 도 닫는다.
+        assertThat(pool.getTotalConnections()).isZero();
+        assertThat(physical.isClosed()).isTrue();
+    }
+
+    @Test
+    void statementReturnsLeasedConnection() throws SQLException {
+        pool = new ConnectionPool(memoryConfig());
+
+        Connection con = pool.getConnection();
+        try (Statement stmt = con.createStatement();
+             PreparedStatement ps = con.prepareStatement("select 1", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            assertThat(stmt.getConnection()).isSameAs(con);
+            assertThat(ps.getConnection()).isSameAs(con);
+        }
+
+        // JdbcTemplate.queryForStream() 처럼 statement 의 커넥션을 닫아도 풀로 반납된다.
+        Statement stmt = con.createStatement();
+        stmt.getConnection().close();
+        stmt.close();
+        assertThat(pool.getActiveConnections()).isZero();
+        assertThat(pool.getIdleConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void otherCredentialsAreNotSupported() {
+        pool = new ConnectionPool(memoryConfig());
+
+        assertThatThrownBy(() -> pool.getConnection("other", "secret"))
+                .isInstanceOf(SQLFeatureNotSupportedException.class);
+    }
+
+    @Test
+    void closeWakesWaitingThreads() throws Exception {
+        ConnectionPoolConfig config = memoryConfig();
+        config.setAcquireTimeoutMillis(30_000);
+        pool = new ConnectionPool(config);
+        Connection con1 = pool.getConnection();
+        Connection con2 = pool.getConnection();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> waiters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            waiters.add(executor.submit(() -> pool.getConnection()));
+        }
+        while (pool.getThreadsAwaitingConnection() < 4) {
+            Thread.sleep(10);
+        }
+
+        long start = System.nanoTime();
+        pool.close();
+        // 타임아웃(30초)까지 기다리지 않고 바로 실패한다.
+        for (Future<?> waiter : waiters) {
+            assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isInstanceOf(SQLException.class)
+                    .hasMessageContaining("closed");
+        }
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(5);
+        executor.shutdown();
+
+        con1.close();
+        con2.close();
+        assertThat(pool.getTotalConnections()).isZero();
+    }
+
+    @Test
+    void concurrentCloseShutsDownOnce() throws Exception {
+        pool = new ConnectionPool(memoryConfig());
+        pool.getConnection().close();
+        pool.getConnection().close();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> closers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            closers.add(executor.submit(() -> {
+                start.await();
+                pool.close();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> closer : closers) {
+            closer.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertThat(pool.getTotalConnections()).isZero();
+        assertThatThrownBy(() -> pool.getConnection()).hasMessageContaining("closed");
+    }
+
+    @Test
+    void shrinkingClosesSurplusIdleConnections() throws SQLException {
+        ConnectionPoolConfig config = memoryConfig();
+        config.setMaxSize(4);
+        pool = new ConnectionPool(config);
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            connections.add(pool.getConnection());
+        }
+        Connection stillBorrowed = connections.remove(0);
+        for (Connection con : connections) {
+            con.close();
+        }
+        assertThat(pool.getIdleConnections()).isEqualTo(3);
+
+        // 놀고 있는 커넥션은 빌려갈 때까지 기다리지 않고 바로 닫는다. 빌려준 커넥션은 그대로 둔다.
+        pool.setMaxSize(2);
+        assertThat(pool.getTotalConnections()).isEqualTo(2);
+        assertThat(pool.getIdleConnections()).isEqualTo(1);
+        assertThat(stillBorrowed.isValid(1)).isTrue();
+
+        pool.setMaxSize(1);
+        assertThat(pool.getTotalConnections()).isEqualTo(1);
+        assertThat(pool.getIdleConnections()).isZero();
+        stillBorrowed.close();
+        assertThat(pool.getTotalConnections()).isEqualTo(1);
+    }
+
+    private PreparedStatement prepareAndClose(Connection con, String sql) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.executeQuery().close();
+            return ps.unwrap(PreparedStatement.class);
+        }
+    }
+}
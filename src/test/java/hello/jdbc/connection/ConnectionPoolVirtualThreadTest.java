@@ -0,0 +1,106 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ *  가상 스레드 pinning 진단
+ *  가상 스레드 10,000 개가 findById 를 호출하는 동안 JFR 의 jdk.VirtualThreadPinned 이벤트를 기록하고
+ *  ConnectionPool 에서 캐리어 스레드가 붙잡힌 적이 없는지 확인한다.
+ *  가상 스레드는 Java 21 부터 사용할 수 있으므로 그 이전 버전에서는 건너뛴다.
+ */
+@Slf4j
+class ConnectionPoolVirtualThreadTest {
+
+    static final int TASKS = 10_000;
+    static final String POOL_CLASS = ConnectionPool.class.getName();
+
+    ConnectionPool pool;
+    MemberRepository repository;
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setPoolName("VirtualPool");
+        config.setUrl("jdbc:h2:mem:virtual;DB_CLOSE_DELAY=-1");
+        config.setMaxSize(10);
+        pool = new ConnectionPool(config);
+        new JdbcTemplate(pool).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+        repository = new MemberRepositoryV4_2(pool);
+        repository.save(new Member("memberA", 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.delete("memberA");
+        pool.close();
+    }
+
+    @Test
+    void noPinningInPool() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads require Java 21+");
+
+        Path file = Files.createTempFile("pinning", ".jfr");
+        AtomicInteger found = new AtomicInteger();
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+
+            ExecutorService executor = newVirtualThreadPerTaskExecutor();
+            for (int i = 0; i < TASKS; i++) {
+                executor.submit(() -> {
+                    if (repository.findById("memberA") != null) {
+                        found.incrementAndGet();
+                    }
+                });
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> pinned = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> pinnedInPool = pinned.stream()
+                .filter(event -> event.getStackTrace() != null)
+                .filter(event -> event.getStackTrace().getFrames().stream()
+                        .map(RecordedFrame::getMethod)
+                        .anyMatch(method -> method.getType().getName().startsWith(POOL_CLASS)))
+                .collect(Collectors.toList());
+        // 드라이버 내부(H2)의 pinning 은 이 풀이 제어할 수 없으므로 개수만 남긴다.
+        log.info("pinned events total = {}, in ConnectionPool = {}", pinned.size(), pinnedInPool.size());
+        Files.deleteIfExists(file);
+
+        assertThat(found.get()).isEqualTo(TASKS);
+        assertThat(pinnedInPool).isEmpty();
+    }
+
+    private ExecutorService newVirtualThreadPerTaskExecutor() throws ReflectiveOperationException {
+        // Java 17 로 컴파일하므로 리플렉션으로 호출한다.
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+}
@@ -0,0 +1,120 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV1;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV1;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionScopeTest {
+
+    ConnectionPool pool;
+    AtomicInteger acquired = new AtomicInteger();
+    DataSource dataSource;
+    MemberRepository repository;
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:scope;DB_CLOSE_DELAY=-1");
+        config.setMinSize(0);
+        config.setMaxSize(2);
+        pool = new ConnectionPool(config);
+        dataSource = new DelegatingDataSource(pool) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                acquired.incrementAndGet();
+                return super.getConnection();
+            }
+        };
+        new JdbcTemplate(pool).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+        repository = new MemberRepositoryV5(dataSource);
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 10000));
+        acquired.set(0);
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(pool).update("delete from member");
+        pool.close();
+    }
+
+    @Test
+    void withoutScope() {
+        transfer();
+        assertThat(acquired).hasValue(4);
+    }
+
+    @Test
+    void oneConnectionPerScope() {
+        ConnectionScope.run(dataSource, () -> {
+            assertThat(ConnectionScope.isBound(dataSource)).isTrue();
+            transfer();
+            ConnectionScope.run(dataSource, this::transfer); // 중첩 스코프는 바깥 커넥션을 그대로 사용
+        });
+
+        assertThat(acquired).hasValue(1);
+        assertThat(ConnectionScope.isBound(dataSource)).isFalse();
+        assertThat(pool.getActiveConnections()).isZero();
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(8000);
+    }
+
+    @Test
+    void memberServiceV1ThroughTransactionAwareProxy() {
+        MemberServiceV1 service = new MemberServiceV1(new MemberRepositoryV1(new TransactionAwareDataSourceProxy(dataSource)));
+
+        ConnectionScope.run(dataSource, () -> {
+            try {
+                service.accountTransfer("memberA", "memberB", 2000);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(acquired).hasValue(1);
+        assertThat(pool.getActiveConnections()).isZero();
+    }
+
+    @Test
+    void transactionInsideScopeUsesScopedConnection() {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        ConnectionScope.run(dataSource, () -> {
+            repository.findById("memberA");
+            assertThatThrownBy(() -> tx.executeWithoutResult(status -> {
+                repository.update("memberA", 0);
+                throw new IllegalStateException("rollback");
+            })).isInstanceOf(IllegalStateException.class);
+            // 롤백되고, 스코프는 계속 같은 커넥션을 autoCommit 으로 사용한다.
+            assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000);
+            repository.update("memberA", 5000);
+        });
+
+        assertThat(acquired).hasValue(1);
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(5000);
+    }
+
+    private void transfer() {
+        Member from = repository.findById("memberA");
+        Member to = repository.findById("memberB");
+        repository.update("memberA", from.getMoney() - 1000);
+        repository.update("memberB", to.getMoney() + 1000);
+    }
+}
@@ -0,0 +1,65 @@
+package hello.jdbc.connection;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionWarmUpTest {
+
+    ConnectionPool pool;
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:warmup;DB_CLOSE_DELAY=-1");
+        config.setMinSize(0);
+        config.setMaxSize(5);
+        pool = new ConnectionPool(config);
+        new JdbcTemplate(pool).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+    }
+
+    @AfterEach
+    void afterEach() {
+        pool.close();
+    }
+
+    @Test
+    void warmUp() {
+        new ConnectionWarmUp(pool, 3, Duration.ofSeconds(10)).warmUp();
+
+        // 예열한 커넥션은 모두 풀에 반납되어 있다.
+        assertThat(pool.getTotalConnections()).isEqualTo(3);
+        assertThat(pool.getActiveConnections()).isZero();
+    }
+
+    @Test
+    void minimumIdle() {
+        assertThat(ConnectionWarmUp.minimumIdle(pool)).isEqualTo(0);
+    }
+
+    @Test
+    void warmUpWithoutSchema() {
+        new JdbcTemplate(pool).execute("drop table member");
+
+        // 스키마가 아직 없어도 리포지토리 SQL 준비만 건너뛰고 예열은 끝난다.
+        new ConnectionWarmUp(pool, 2, Duration.ofSeconds(10)).warmUp();
+        assertThat(pool.getTotalConnections()).isEqualTo(2);
+        assertThat(pool.getActiveConnections()).isZero();
+    }
+
+    @Test
+    void warmUpFail() {
+        // 없는 DB - 커넥션을 열거나 검증 쿼리(select 1)를 실행할 수 없으면 애플리케이션이 시작되지 않는다.
+        DataSource unreachable = new DriverManagerDataSource("jdbc:h2:mem:warmupUnreachable;IFEXISTS=TRUE", "sa", "");
+        assertThatThrownBy(() -> new ConnectionWarmUp(unreachable, 2, Duration.ofSeconds(10)).warmUp())
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,67 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV0;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ *  DBConnectionUtil - DriverManager 직접 연결 vs 풀링 모드
+ *  MemberRepositoryV0.findById 한 번에 걸리는 평균 시간을 비교한다.
+ *  ./gradlew benchmark 로 실행
+ */
+@Slf4j
+@Tag("benchmark")
+class DBConnectionUtilBenchmarkTest {
+
+    static final String MEMBER_ID = "benchV0";
+    static final int WARMUP = 200;
+    static final int ITERATIONS = 2_000;
+
+    MemberRepositoryV0 repository = new MemberRepositoryV0();
+
+    @BeforeEach
+    void beforeEach() throws SQLException {
+        repository.save(new Member(MEMBER_ID, 10000));
+    }
+
+    @AfterEach
+    void afterEach() throws SQLException {
+        DBConnectionUtil.disablePool();
+        repository.delete(MEMBER_ID);
+    }
+
+    @Test
+    void findByIdLatency() throws SQLException {
+        double directMicros = measure();
+
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setMinSize(1);
+        config.setMaxSize(1);
+        DBConnectionUtil.enablePool(config);
+        double pooledMicros = measure();
+
+        log.info("findById direct = {}us/op, pooled = {}us/op, speedup = {}x",
+                String.format("%.1f", directMicros), String.format("%.1f", pooledMicros),
+                String.format("%.1f", directMicros / pooledMicros));
+        assertThat(pooledMicros).isLessThan(directMicros);
+    }
+
+    private double measure() throws SQLException {
+        for (int i = 0; i < WARMUP; i++) {
+            repository.findById(MEMBER_ID);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            repository.findById(MEMBER_ID);
+        }
+        return (System.nanoTime() - start) / 1_000.0 / ITERATIONS;
+    }
+}
@@ -5,6 +5,7 @@ import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -17,6 +18,24 @@ class DBConnectionUtilTest {
         assertThat(connection).isNotNull(); // connection 이 null 이 아니면 통과
     }
 
-
+    @Test
+    void pooledConnection() throws SQLException {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setMinSize(0);
+        DBConnectionUtil.enablePool(config);
+        try {
+            Connection con1 = DBConnectionUtil.getConnection();
+            Connection physical = con1.unwrap(Connection.class);
+            con1.close();
+
+            // 풀링 모드에서는 반납한 물리 커넥션을 다시 사용한다.
+            Connection con2 = DBConnectionUtil.getConnection();
+            assertThat(con2.unwrap(Connection.class)).isSameAs(physical);
+            con2.close();
+        } finally {
+            DBConnectionUtil.disablePool();
+        }
+        assertThat(DBConnectionUtil.isPooled()).isFalse();
+    }
 
 }
@@ -0,0 +1,291 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import hello.jdbc.service.MemberServiceV4.TransferMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeadlineDataSourceTest {
+
+    ConnectionPool pool;
+    AtomicInteger acquired = new AtomicInteger();
+    DeadlineDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:deadline;DB_CLOSE_DELAY=-1");
+        config.setMinSize(0);
+        config.setMaxSize(1);
+        pool = new ConnectionPool(config);
+        dataSource = new DeadlineDataSource(new DelegatingDataSource(pool) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                acquired.incrementAndGet();
+                return super.getConnection();
+            }
+        });
+        new JdbcTemplate(pool).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(pool).update("delete from member");
+        dataSource.close();
+        pool.close();
+    }
+
+    @Test
+    void expiredDeadlineFailsFast() {
+        assertThatThrownBy(() -> Deadline.within(Duration.ZERO, () -> {
+            try (Connection con = dataSource.getConnection()) {
+                return con;
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        })).hasCauseInstanceOf(SQLTimeoutException.class);
+
+        // DB 에 가지 않았다.
+        assertThat(acquired).hasValue(0);
+    }
+
+    @Test
+    void expiredBeforeExecute() throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            PreparedStatement ps = con.prepareStatement("select 1");
+            Deadline.within(Duration.ofMillis(50), () -> {
+                sleep(100);
+                assertThatThrownBy(ps::executeQuery).isInstanceOf(SQLTimeoutException.class);
+            });
+            ps.close();
+        }
+    }
+
+    @Test
+    void remainingBudgetIsQueryTimeout() throws SQLException {
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = con.prepareStatement("select 1")) {
+            Deadline.within(Duration.ofMillis(4_500), () -> execute(ps));
+            assertThat(ps.getQueryTimeout()).isEqualTo(5); // 초 단위 올림
+
+            // 호출한 쪽이 건 타임아웃이 더 짧으면 그대로
+            ps.setQueryTimeout(2);
+            Deadline.within(Duration.ofSeconds(10), () -> execute(ps));
+            assertThat(ps.getQueryTimeout()).isEqualTo(2);
+
+            // 마감 시각이 없으면 호출한 쪽의 값
+            execute(ps);
+            assertThat(ps.getQueryTimeout()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void nestedDeadlineKeepsEarlier() {
+        Deadline.within(Duration.ofMillis(100), () ->
+                Deadline.within(Duration.ofSeconds(10), () ->
+                        assertThat(Deadline.remainingNanos()).isLessThanOrEqualTo(Duration.ofMillis(100).toNanos())));
+        assertThat(Deadline.isSet()).isFalse();
+    }
+
+    @Test
+    void poolWaitIsCappedByDeadline() throws SQLException {
+        Connection held = pool.getConnection();
+        try {
+            long start = System.nanoTime();
+            // acquireTimeoutMillis 는 30초지만 남은 시간 200ms 만 기다린다.
+            assertThatThrownBy(() -> Deadline.within(Duration.ofMillis(200), () -> {
+                try {
+                    return dataSource.getConnection();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            })).hasCauseInstanceOf(SQLTimeoutException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        } finally {
+            held.close();
+        }
+    }
+
+    @Test
+    void accountTransferWithExpiredBudget() {
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        MemberServiceV4 service = new MemberServiceV4(repository, TransferMode.READ_MODIFY_WRITE, new DataSourceTransactionManager(dataSource));
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 10000));
+
+        // 트랜잭션 커넥션도 얻지 않고 실패한다.
+        acquired.set(0);
+        assertThatThrownBy(() -> service.accountTransfer("memberA", "memberB", 2000, Duration.ZERO))
+                .isInstanceOf(CannotCreateTransactionException.class)
+                .hasRootCauseInstanceOf(SQLTimeoutException.class);
+        assertThat(acquired).hasValue(0);
+
+        service.accountTransfer("memberA", "memberB", 2000, Duration.ofSeconds(5));
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(8000);
+        assertThat(repository.findById("memberB").getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    void transactionConnectionWaitIsCapped() throws SQLException {
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        MemberServiceV4 service = new MemberServiceV4(repository, TransferMode.READ_MODIFY_WRITE, new DataSourceTransactionManager(dataSource));
+
+        Connection held = pool.getConnection();
+        try {
+            long start = System.nanoTime();
+            // 풀의 하나뿐인 커넥션을 쓰고 있으므로 트랜잭션 커넥션을 기다리다 남은 시간 200ms 에 실패한다.
+            assertThatThrownBy(() -> service.accountTransfer("memberA", "memberB", 2000, Duration.ofMillis(200)))
+                    .isInstanceOf(CannotCreateTransactionException.class)
+                    .hasRootCauseInstanceOf(SQLTimeoutException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        } finally {
+            held.close();
+        }
+    }
+
+    @Test
+    void hikariWaitIsCappedByDeadline() throws SQLException {
+        HikariDataSource hikari = new HikariDataSource();
+        hikari.setJdbcUrl("jdbc:h2:mem:deadline;DB_CLOSE_DELAY=-1");
+        hikari.setUsername("sa");
+        hikari.setMaximumPoolSize(1);
+        hikari.setConnectionTimeout(30_000);
+        DeadlineDataSource deadlineHikari = new DeadlineDataSource(hikari);
+        try (hikari; deadlineHikari) {
+            Connection held = hikari.getConnection();
+            long start = System.nanoTime();
+            // Hikari 는 30초를 기다리지만 남은 시간 200ms 에 실패한다.
+            assertThatThrownBy(() -> Deadline.within(Duration.ofMillis(200), () -> {
+                try {
+                    return deadlineHikari.getConnection();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            })).hasCauseInstanceOf(SQLTimeoutException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+
+            // 늦게 얻은 커넥션은 풀로 돌려준다.
+            held.close();
+            Deadline.within(Duration.ofSeconds(5), () -> {
+                try (Connection con = deadlineHikari.getConnection()) {
+                    assertThat(con.isValid(1)).isTrue();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    void closedDataSourceStopsAcquiring() throws SQLException {
+        DeadlineDataSource deadlineDriver = new DeadlineDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:deadline;DB_CLOSE_DELAY=-1", "sa", ""));
+        Deadline.within(Duration.ofSeconds(5), () -> {
+            try (Connection con = deadlineDriver.getConnection()) {
+                assertThat(con.isValid(1)).isTrue();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        deadlineDriver.close();
+        assertThatThrownBy(() -> Deadline.within(Duration.ofSeconds(5), () -> {
+            try {
+                return deadlineDriver.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        })).hasCauseInstanceOf(SQLException.class).hasMessageContaining("closed");
+        // 마감 시각이 없으면 별도 스레드를 쓰지 않으므로 그대로 동작한다.
+        try (Connection con = deadlineDriver.getConnection()) {
+            assertThat(con.isValid(1)).isTrue();
+        }
+    }
+
+    @Test
+    void acquirerRejectsWhenFull() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 고갈된 풀 흉내 - release 전까지 커넥션을 주지 않는다.
+        DeadlineDataSource blocked = new DeadlineDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:deadline;DB_CLOSE_DELAY=-1", "sa", "") {
+                    @Override
+                    public Connection getConnection() throws SQLException {
+                        entered.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return super.getConnection();
+                    }
+                }, 1);
+        try (blocked) {
+            CompletableFuture<Void> running = CompletableFuture.runAsync(() -> acquireAndClose(blocked));
+            assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+            CompletableFuture<Void> queued = CompletableFuture.runAsync(() -> acquireAndClose(blocked));
+            sleep(100);
+
+            // 스레드 1개, 대기열 1개가 찼으므로 스레드를 더 만들지 않고 바로 거절한다.
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> acquireAndClose(blocked))
+                    .hasCauseInstanceOf(SQLException.class)
+                    .hasMessageContaining("too many callers");
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void acquireAndClose(DataSource dataSource) {
+        Deadline.within(Duration.ofSeconds(5), () -> {
+            try (Connection con = dataSource.getConnection()) {
+                assertThat(con.isValid(1)).isTrue();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void execute(PreparedStatement ps) {
+        try {
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
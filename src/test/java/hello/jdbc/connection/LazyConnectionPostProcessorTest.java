@@ -0,0 +1,101 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LazyConnectionPostProcessorTest {
+
+    ConnectionPool pool;
+    AtomicInteger acquired = new AtomicInteger();
+    DataSource dataSource;
+    DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:lazy;DB_CLOSE_DELAY=-1");
+        config.setMinSize(0);
+        pool = new ConnectionPool(config);
+        new JdbcTemplate(pool).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+
+        DataSource counting = new DelegatingDataSource(pool) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                acquired.incrementAndGet();
+                return super.getConnection();
+            }
+        };
+        dataSource = (DataSource) new LazyConnectionPostProcessor().postProcessAfterInitialization(counting, "dataSource");
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        acquired.set(0); // 기본 autoCommit, 격리 수준을 읽느라 가져온 커넥션
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(pool).update("delete from member");
+        pool.close();
+    }
+
+    @Test
+    void wrapsOnce() {
+        assertThat(dataSource).isInstanceOf(LazyConnectionDataSourceProxy.class);
+        assertThat(new LazyConnectionPostProcessor().postProcessAfterInitialization(dataSource, "dataSource")).isSameAs(dataSource);
+    }
+
+    @Test
+    void transactionWithoutSqlNeverAcquires() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        tx.executeWithoutResult(status -> {
+        });
+        assertThatThrownBy(() -> tx.executeWithoutResult(status -> {
+            throw new IllegalStateException("SQL 실행 전 검증 실패");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(acquired).hasValue(0);
+    }
+
+    @Test
+    void transactionalServiceAcquiresOnFirstStatement() {
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 10000));
+        acquired.set(0);
+
+        ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(repository));
+        proxyFactory.addAdvice(new TransactionInterceptor((TransactionManager) transactionManager, new AnnotationTransactionAttributeSource()));
+        MemberServiceV4 memberService = (MemberServiceV4) proxyFactory.getProxy();
+
+        memberService.accountTransfer("memberA", "memberB", 2000);
+        assertThat(acquired).hasValue(1); // 트랜잭션 하나에 커넥션 하나
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(8000);
+
+        // 이체 중 예외 - 실제 커넥션에서 롤백된다.
+        repository.save(new Member("ex", 10000));
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "ex", 2000))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(8000);
+    }
+}
@@ -0,0 +1,101 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.connection.LeakDetectingDataSource.LeakReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LeakDetectingDataSourceTest {
+
+    ConnectionPool pool;
+    AtomicLong nanoTime = new AtomicLong(); // 기다리지 않고 시간을 움직인다.
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:leak;DB_CLOSE_DELAY=-1");
+        config.setMinSize(0);
+        pool = new ConnectionPool(config);
+    }
+
+    @AfterEach
+    void afterEach() {
+        pool.close();
+    }
+
+    @Test
+    void leak() throws SQLException {
+        LeakDetectingDataSource dataSource = create(1.0);
+
+        Connection returned = dataSource.getConnection();
+        returned.close();
+        Connection leaked = dataSource.getConnection(); // close() 를 하지 않음
+
+        assertThat(dataSource.detectLeaks()).isEmpty(); // threshold 전
+        elapse(100);
+        List<LeakReport> reports = dataSource.detectLeaks();
+
+        assertThat(reports).hasSize(1);
+        LeakReport report = reports.get(0);
+        assertThat(report.getThreadName()).isEqualTo(Thread.currentThread().getName());
+        assertThat(report.getHeldMillis()).isEqualTo(100);
+        // 가져간 위치가 스택 트레이스에 남는다.
+        assertThat(report.getAcquiredAt().getStackTrace())
+                .anyMatch(frame -> frame.getMethodName().equals("leak"));
+
+        // 한 번 보고한 커넥션은 다시 보고하지 않는다.
+        assertThat(dataSource.detectLeaks()).isEmpty();
+
+        leaked.close();
+        assertThat(dataSource.getOutstanding()).isZero();
+        assertThat(dataSource.getLeakCount()).isEqualTo(1);
+        dataSource.close();
+    }
+
+    @Test
+    void notSampled() throws SQLException {
+        LeakDetectingDataSource dataSource = create(0.0);
+
+        Connection leaked = dataSource.getConnection();
+        elapse(100);
+
+        List<LeakReport> reports = dataSource.detectLeaks();
+        assertThat(reports).hasSize(1);
+        assertThat(reports.get(0).getAcquiredAt()).isNull();
+        leaked.close();
+        dataSource.close();
+    }
+
+    @Test
+    void closingStatementConnectionEndsTracking() throws SQLException {
+        LeakDetectingDataSource dataSource = create(0.0);
+
+        Connection con = dataSource.getConnection();
+        Statement stmt = con.createStatement();
+        assertThat(stmt.getConnection()).isSameAs(con);
+
+        // JdbcTemplate.queryForStream() 처럼 statement 의 커넥션을 닫아도 누수로 보고하지 않는다.
+        stmt.getConnection().close();
+        elapse(100);
+        assertThat(dataSource.getOutstanding()).isZero();
+        assertThat(dataSource.detectLeaks()).isEmpty();
+        dataSource.close();
+    }
+
+    private LeakDetectingDataSource create(double sampleRate) {
+        return new LeakDetectingDataSource(pool, 50, sampleRate, 0, nanoTime::get);
+    }
+
+    private void elapse(long millis) {
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
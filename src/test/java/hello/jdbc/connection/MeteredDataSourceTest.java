@@ -0,0 +1,107 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class MeteredDataSourceTest {
+
+    HikariDataSource hikari;
+    MeteredDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        hikari = new HikariDataSource();
+        hikari.setJdbcUrl("jdbc:h2:mem:metered;DB_CLOSE_DELAY=-1");
+        hikari.setUsername("sa");
+        hikari.setMaximumPoolSize(2);
+        hikari.setConnectionTimeout(250);
+        hikari.setPoolName("CorgiPool");
+        dataSource = new MeteredDataSource(hikari);
+    }
+
+    @AfterEach
+    void afterEach() {
+        dataSource.unregisterMBean();
+        hikari.close();
+    }
+
+    @Test
+    void metrics() throws SQLException {
+        Connection con1 = dataSource.getConnection();
+        Connection con2 = dataSource.getConnection();
+
+        // 풀 크기 2 를 넘으면 타임아웃
+        assertThatThrownBy(() -> dataSource.getConnection())
+                .isInstanceOf(SQLException.class);
+
+        DataSourceMetrics busy = dataSource.snapshot();
+        log.info("busy = {}", busy);
+        assertThat(busy.getAcquireCount()).isEqualTo(2);
+        assertThat(busy.getAcquireTimeouts()).isEqualTo(1);
+        assertThat(busy.getInUse()).isEqualTo(2);
+        assertThat(busy.getIdle()).isZero();
+        assertThat(busy.getWaiting()).isZero();
+
+        con1.close();
+        con2.close();
+        con2.close(); // 두 번 닫아도 한 번만 기록
+
+        DataSourceMetrics done = dataSource.snapshot();
+        assertThat(done.getInUse()).isZero();
+        assertThat(done.getIdle()).isEqualTo(2);
+        assertThat(done.getHoldTime().getCount()).isEqualTo(2);
+        assertThat(done.getAcquireTime().getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void statementReturnsMeteredConnection() throws SQLException {
+        Connection con = dataSource.getConnection();
+        Statement stmt = con.createStatement();
+        PreparedStatement ps = con.prepareStatement("select 1");
+        assertThat(stmt.getConnection()).isSameAs(con);
+        assertThat(ps.getConnection()).isSameAs(con);
+
+        // JdbcTemplate.queryForStream() 처럼 statement 의 커넥션을 닫아도 사용 시간이 기록된다.
+        ps.close();
+        stmt.getConnection().close();
+        assertThat(dataSource.snapshot().getInUse()).isZero();
+        assertThat(dataSource.snapshot().getHoldTime().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void jmx() throws Exception {
+        dataSource.registerMBean("CorgiPool");
+        Connection con = dataSource.getConnection();
+
+        Object inUse = ManagementFactory.getPlatformMBeanServer().getAttribute(dataSource.getObjectName(), "InUse");
+        assertThat(inUse).isEqualTo(1);
+        con.close();
+    }
+
+    @Test
+    void percentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100_000); // 100us
+        }
+        histogram.record(50_000_000); // 50ms
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getP50Micros()).isBetween(100L, 127L);
+        assertThat(snapshot.getP99Micros()).isBetween(100L, 127L);
+        assertThat(snapshot.percentileMicros(1.0)).isEqualTo(50_000L);
+    }
+}
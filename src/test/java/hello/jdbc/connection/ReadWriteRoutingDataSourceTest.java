@@ -0,0 +1,231 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.connection.ReadWriteRoutingDataSource.ReplicaSelection;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ *  인메모리 H2 두 개(또는 세 개)로 primary, replica 를 흉내 낸다.
+ *  복제는 replicate() 가 primary 의 member 테이블을 replica 로 복사하는 것으로 대신한다.
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    DataSource primary = memoryDataSource("primary");
+    DataSource replica1 = memoryDataSource("replica1");
+    DataSource replica2 = memoryDataSource("replica2");
+
+    @AfterEach
+    void afterEach() {
+        for (DataSource dataSource : List.of(primary, replica1, replica2)) {
+            new JdbcTemplate(dataSource).update("delete from member");
+        }
+    }
+
+    @Test
+    void readsGoToReplica() {
+        MemberRepository repository = new MemberRepositoryV5(routing(List.of(replica1), ReplicaSelection.ROUND_ROBIN, Duration.ZERO));
+
+        repository.save(new Member("memberA", 10000)); // primary
+
+        // 아직 복제되지 않았으므로 replica 에는 없다.
+        assertThatThrownBy(() -> repository.findById("memberA"))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+
+        replicate();
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void lockingSelectGoesToPrimary() {
+        ReadWriteRoutingDataSource dataSource = routing(List.of(replica1), ReplicaSelection.ROUND_ROBIN, Duration.ZERO);
+        new MemberRepositoryV5(dataSource).save(new Member("memberA", 10000)); // primary
+
+        // 복제 전이지만 락을 거는 select 는 primary 에서 읽는다.
+        Integer money = new JdbcTemplate(dataSource).queryForObject(
+                "select money from member where member_id = ? for update", Integer.class, "memberA");
+        assertThat(money).isEqualTo(10000);
+        assertThat(dataSource.getOutstanding(0)).isZero();
+
+        assertThat(ReadWriteRoutingDataSource.isRead("select * from member")).isTrue();
+        assertThat(ReadWriteRoutingDataSource.isRead("SELECT * FROM member FOR SHARE")).isFalse();
+        assertThat(ReadWriteRoutingDataSource.isRead("select * from member\nfor no key update")).isFalse();
+        assertThat(ReadWriteRoutingDataSource.isRead("select * from member for key share")).isFalse();
+        assertThat(ReadWriteRoutingDataSource.isRead("select * from formula")).isTrue();
+    }
+
+    @Test
+    void transactionStaysOnPrimary() {
+        ReadWriteRoutingDataSource dataSource = routing(List.of(replica1), ReplicaSelection.ROUND_ROBIN, Duration.ZERO);
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        Member found = tx.execute(status -> {
+            repository.save(new Member("memberA", 10000));
+            return repository.findById("memberA"); // 트랜잭션 안의 읽기는 primary
+        });
+
+        assertThat(found.getMoney()).isEqualTo(10000);
+        assertThat(new JdbcTemplate(replica1).queryForObject("select count(*) from member", Integer.class)).isZero();
+    }
+
+    @Test
+    void readYourWrites() throws Exception {
+        MemberRepository repository = new MemberRepositoryV5(routing(List.of(replica1), ReplicaSelection.ROUND_ROBIN, Duration.ofSeconds(10)));
+
+        repository.save(new Member("memberA", 10000));
+
+        // 쓴 스레드는 잠시 primary 에서 읽는다.
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000);
+
+        // 다른 스레드는 replica 에서 읽는다.
+        CompletableFuture<Member> otherThread = CompletableFuture.supplyAsync(() -> repository.findById("memberA"));
+        assertThatThrownBy(otherThread::join)
+                .hasCauseInstanceOf(EmptyResultDataAccessException.class);
+    }
+
+    @Test
+    void roundRobin() {
+        new JdbcTemplate(replica1).update("insert into member(member_id, money) values('memberA', 1)");
+        new JdbcTemplate(replica2).update("insert into member(member_id, money) values('memberA', 2)");
+        MemberRepository repository = new MemberRepositoryV5(routing(List.of(replica1, replica2), ReplicaSelection.ROUND_ROBIN, Duration.ZERO));
+
+        int first = repository.findById("memberA").getMoney();
+        int second = repository.findById("memberA").getMoney();
+        int third = repository.findById("memberA").getMoney();
+
+        assertThat(first).isNotEqualTo(second);
+        assertThat(third).isEqualTo(first);
+    }
+
+    @Test
+    void leastOutstanding() throws SQLException {
+        new JdbcTemplate(replica1).update("insert into member(member_id, money) values('memberA', 1)");
+        new JdbcTemplate(replica2).update("insert into member(member_id, money) values('memberA', 2)");
+        ReadWriteRoutingDataSource dataSource = routing(List.of(replica1, replica2), ReplicaSelection.LEAST_OUTSTANDING, Duration.ZERO);
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+
+        // 한 replica 의 커넥션을 붙잡아 둔다.
+        Connection busy = dataSource.getConnection();
+        busy.prepareStatement("select 1").close();
+        int busyReplica = dataSource.getOutstanding(0) == 1 ? 0 : 1;
+
+        for (int i = 0; i < 4; i++) {
+            // 남은 replica 로만 간다.
+            assertThat(repository.findById("memberA").getMoney()).isEqualTo(busyReplica == 0 ? 2 : 1);
+        }
+        busy.close();
+        assertThat(dataSource.getOutstanding(busyReplica)).isZero();
+    }
+
+    @Test
+    void closingStatementConnectionReleasesReplica() throws SQLException {
+        ReadWriteRoutingDataSource dataSource = routing(List.of(replica1), ReplicaSelection.LEAST_OUTSTANDING, Duration.ZERO);
+
+        Connection con = dataSource.getConnection();
+        PreparedStatement ps = con.prepareStatement("select 1");
+        assertThat(ps.getConnection()).isSameAs(con);
+        assertThat(dataSource.getOutstanding(0)).isEqualTo(1);
+
+        // JdbcTemplate.queryForStream() 처럼 statement 의 커넥션을 닫아도 replica 의 사용 중 커넥션 수가 준다.
+        ps.getConnection().close();
+        assertThat(dataSource.getOutstanding(0)).isZero();
+    }
+
+    @Test
+    void writeAfterReplicaReadKeepsOpenResultSet() throws SQLException {
+        new JdbcTemplate(replica1).update("insert into member(member_id, money) values('memberA', 1)");
+        new JdbcTemplate(replica1).update("insert into member(member_id, money) values('memberB', 2)");
+        ReadWriteRoutingDataSource dataSource = routing(List.of(replica1), ReplicaSelection.ROUND_ROBIN, Duration.ZERO);
+
+        try (Connection con = dataSource.getConnection()) {
+            PreparedStatement read = con.prepareStatement("select member_id from member order by member_id");
+            ResultSet rs = read.executeQuery();
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("memberA");
+
+            // 같은 커넥션으로 쓰면 primary 를 따로 열고, replica 의 ResultSet 은 계속 읽을 수 있다.
+            try (PreparedStatement write = con.prepareStatement("insert into member(member_id, money) values(?, ?)")) {
+                write.setString(1, "memberC");
+                write.setInt(2, 3);
+                write.executeUpdate();
+            }
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("memberB");
+            assertThat(rs.next()).isFalse();
+            assertThat(dataSource.getOutstanding(0)).isEqualTo(1);
+
+            // replica 의 statement 를 닫으면 replica 커넥션도 돌려준다.
+            read.close();
+            assertThat(con.getAutoCommit()).isTrue();
+            assertThat(dataSource.getOutstanding(0)).isZero();
+        }
+        assertThat(new JdbcTemplate(primary).queryForObject("select count(*) from member", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void closingProxyReleasesReplicaWithOpenStatement() throws SQLException {
+        ReadWriteRoutingDataSource dataSource = routing(List.of(replica1), ReplicaSelection.ROUND_ROBIN, Duration.ZERO);
+
+        Connection con = dataSource.getConnection();
+        con.prepareStatement("select 1").executeQuery();
+        con.setAutoCommit(false); // primary 로 옮긴다. replica 의 statement 는 열려 있다.
+        assertThat(dataSource.getOutstanding(0)).isEqualTo(1);
+
+        con.rollback();
+        con.close();
+        assertThat(dataSource.getOutstanding(0)).isZero();
+    }
+
+    @Test
+    void otherCredentialsAreNotSupported() {
+        ReadWriteRoutingDataSource dataSource = routing(List.of(replica1), ReplicaSelection.ROUND_ROBIN, Duration.ZERO);
+
+        assertThatThrownBy(() -> dataSource.getConnection("other", "secret"))
+                .isInstanceOf(SQLFeatureNotSupportedException.class);
+    }
+
+    private ReadWriteRoutingDataSource routing(List<DataSource> replicas, ReplicaSelection selection, Duration readYourWrites) {
+        return new ReadWriteRoutingDataSource(primary, replicas, selection, readYourWrites);
+    }
+
+    /**
+     *  복제 흉내 - primary 의 member 를 모든 replica 로 복사
+     */
+    private void replicate() {
+        List<Member> members = new JdbcTemplate(primary).query("select * from member",
+                (rs, rowNum) -> new Member(rs.getString("member_id"), rs.getInt("money")));
+        for (DataSource replica : List.of(replica1, replica2)) {
+            JdbcTemplate template = new JdbcTemplate(replica);
+            template.update("delete from member");
+            members.forEach(member -> template.update("insert into member(member_id, money) values(?, ?)",
+                    member.getMemberId(), member.getMoney()));
+        }
+    }
+
+    private static DataSource memoryDataSource(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new JdbcTemplate(dataSource).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+        return dataSource;
+    }
+}
@@ -0,0 +1,198 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.connection.ResilientDataSource.State;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.ex.MyDbException;
+import hello.jdbc.repository.ex.MyDbUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResilientDataSourceTest {
+
+    ConnectionPool pool;
+    volatile boolean down; // DB 가 멈춘 상황 흉내
+    AtomicInteger attempts = new AtomicInteger();
+    AtomicLong nanoTime = new AtomicLong();
+    ResilientDataSourceConfig config = new ResilientDataSourceConfig();
+    ResilientDataSource dataSource;
+    MemberRepository repository;
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+        poolConfig.setUrl("jdbc:h2:mem:resilient;DB_CLOSE_DELAY=-1");
+        poolConfig.setMinSize(0);
+        pool = new ConnectionPool(poolConfig);
+        new JdbcTemplate(pool).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+
+        config.setWindowSize(4);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(0.5);
+        config.setOpenDurationMillis(100);
+        config.setRampSteps(2);
+        config.setProbesPerStep(2);
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(pool).update("delete from member");
+        pool.close();
+    }
+
+    private void create() {
+        dataSource = new ResilientDataSource(new DelegatingDataSource(pool) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                attempts.incrementAndGet();
+                if (down) {
+                    throw new SQLTransientConnectionException("connection is not available");
+                }
+                return super.getConnection();
+            }
+        }, config, nanoTime::get);
+        repository = new MemberRepositoryV5(dataSource);
+        repository.save(new Member("memberA", 10000));
+    }
+
+    @Test
+    void opensOnAcquireFailures() {
+        create(); // save - 커넥션 획득, SQL 실행 성공 2번
+        down = true;
+        assertThatThrownBy(() -> repository.findById("memberA"))
+                .isInstanceOf(CannotGetJdbcConnectionException.class);
+        assertThat(dataSource.getState()).isEqualTo(State.CLOSED); // 1/3, minimumCalls 전
+        assertThatThrownBy(() -> repository.findById("memberA"))
+                .isInstanceOf(CannotGetJdbcConnectionException.class);
+        assertThat(dataSource.getState()).isEqualTo(State.OPEN); // 2/4 실패
+
+        // 열려 있으면 DB 에 가지 않고 바로 실패한다.
+        int before = attempts.get();
+        assertThatThrownBy(() -> repository.findById("memberA"))
+                .isInstanceOf(MyDbUnavailableException.class)
+                .isInstanceOf(MyDbException.class);
+        assertThat(attempts.get()).isEqualTo(before);
+        assertThat(dataSource.getRejectedCount()).isEqualTo(1);
+    }
+
+    private void elapse(long millis) {
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    void halfOpenRampsUpGradually() {
+        create();
+        down = true;
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> repository.findById("memberA"));
+        }
+        down = false;
+        elapse(99);
+        assertThat(dataSource.getState()).isEqualTo(State.OPEN); // openDuration 전
+        elapse(1);
+        assertThat(dataSource.getState()).isEqualTo(State.HALF_OPEN);
+
+        // 1단계는 요청 절반만 통과, 2번 성공하면 2단계(전부 통과), 다시 2번 성공하면 닫힌다.
+        assertThat(tryFind()).isTrue();
+        assertThat(tryFind()).isFalse();
+        assertThat(tryFind()).isTrue();
+        assertThat(dataSource.getState()).isEqualTo(State.HALF_OPEN);
+        assertThat(tryFind()).isTrue();
+        assertThat(tryFind()).isTrue();
+        assertThat(dataSource.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void halfOpenFailureReopens() {
+        create();
+        down = true;
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> repository.findById("memberA"));
+        }
+        elapse(100);
+        assertThatThrownBy(() -> repository.findById("memberA"))
+                .isInstanceOf(CannotGetJdbcConnectionException.class); // 시험 삼아 보낸 요청이 실패
+        assertThat(dataSource.getState()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    void sqlErrorsDoNotOpen() {
+        create();
+        for (int i = 0; i < 8; i++) {
+            assertThatThrownBy(() -> repository.save(new Member("memberA", 0)))
+                    .isInstanceOf(DuplicateKeyException.class);
+        }
+        assertThat(dataSource.getState()).isEqualTo(State.CLOSED);
+        assertThat(dataSource.getFailureRate()).isZero();
+    }
+
+    @Test
+    void poolTimeoutsDoNotOpen() throws SQLException {
+        ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+        poolConfig.setPoolName("resilient-saturated");
+        poolConfig.setUrl("jdbc:h2:mem:resilient;DB_CLOSE_DELAY=-1");
+        poolConfig.setMinSize(0);
+        poolConfig.setMaxSize(1);
+        poolConfig.setAcquireTimeoutMillis(10);
+        try (ConnectionPool saturated = new ConnectionPool(poolConfig)) {
+            ResilientDataSource dataSource = new ResilientDataSource(saturated, config);
+
+            // DB 는 멀쩡하고 풀만 바쁘다.
+            Connection held = saturated.getConnection();
+            try {
+                for (int i = 0; i < 8; i++) {
+                    assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTimeoutException.class);
+                }
+            } finally {
+                held.close();
+            }
+            assertThat(dataSource.getState()).isEqualTo(State.CLOSED);
+            assertThat(dataSource.getFailureRate()).isZero();
+            dataSource.getConnection().close();
+        }
+    }
+
+    @Test
+    void bulkhead() throws SQLException {
+        config.setMaxConcurrent(1);
+        create();
+
+        Connection held = dataSource.getConnection();
+        try {
+            assertThat(dataSource.getAvailableConcurrency()).isZero();
+            assertThatThrownBy(() -> repository.findById("memberA"))
+                    .isInstanceOf(MyDbUnavailableException.class);
+        } finally {
+            held.close();
+        }
+        assertThat(dataSource.getAvailableConcurrency()).isEqualTo(1);
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000);
+        assertThat(dataSource.getState()).isEqualTo(State.CLOSED);
+    }
+
+    private boolean tryFind() {
+        try {
+            repository.findById("memberA");
+            return true;
+        } catch (MyDbUnavailableException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ *  PreparedStatement 캐시 유무에 따른 이체(findById 2번, update 2번) 한 번의 평균 시간
+ *  캐시가 없으면 매번 SQL 을 파싱하고 실행 계획을 만든다.
+ *  ./gradlew benchmark 로 실행
+ */
+@Slf4j
+@Tag("benchmark")
+class StatementCacheBenchmarkTest {
+
+    static final int WARMUP = 2_000;
+    static final int ITERATIONS = 20_000;
+
+    @Test
+    void transferLatency() {
+        double uncachedMicros = measure(0);
+        double cachedMicros = measure(32);
+
+        log.info("transfer without statement cache = {}us/op, with cache = {}us/op, speedup = {}x",
+                String.format("%.1f", uncachedMicros), String.format("%.1f", cachedMicros),
+                String.format("%.1f", uncachedMicros / cachedMicros));
+        assertThat(cachedMicros).isLessThan(uncachedMicros);
+    }
+
+    private double measure(int statementCacheSize) {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setPoolName("cache" + statementCacheSize);
+        config.setUrl("jdbc:h2:mem:statementCache;DB_CLOSE_DELAY=-1");
+        config.setMinSize(1);
+        config.setMaxSize(1);
+        config.setStatementCacheSize(statementCacheSize);
+        try (ConnectionPool pool = new ConnectionPool(config)) {
+            JdbcTemplate template = new JdbcTemplate(pool);
+            template.execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+            template.update("delete from member");
+
+            MemberRepository repository = new MemberRepositoryV4_2(pool);
+            repository.save(new Member("memberA", 1_000_000));
+            repository.save(new Member("memberB", 1_000_000));
+
+            for (int i = 0; i < WARMUP; i++) {
+                transfer(repository);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                transfer(repository);
+            }
+            double micros = (System.nanoTime() - start) / 1_000.0 / ITERATIONS;
+            log.info("statementCacheSize = {}, hits = {}, misses = {}",
+                    statementCacheSize, pool.getStatementCacheHits(), pool.getStatementCacheMisses());
+            return micros;
+        }
+    }
+
+    private void transfer(MemberRepository repository) {
+        Member from = repository.findById("memberA");
+        Member to = repository.findById("memberB");
+        repository.update("memberA", from.getMoney() - 1);
+        repository.update("memberB", to.getMoney() + 1);
+    }
+}
@@ -0,0 +1,126 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.connection.ConnectionPool;
+import hello.jdbc.connection.ConnectionPoolConfig;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ *  동시 요청 수(1, 4, 16, 64)에 따른 findById 처리량
+ *  - blocking : 요청 수만큼의 스레드가 MemberRepositoryV5 를 직접 호출한다.
+ *  - async    : 스레드 하나가 AsyncMemberRepository 로 요청 수만큼의 future 를 계속 띄워 둔다.
+ *  H2 서버(tcp)가 떠 있으면 tcp, 아니면 인메모리 H2 를 쓴다. -Dbenchmark.url 로 바꿀 수 있다.
+ *  ./gradlew benchmark 로 실행
+ */
+@Slf4j
+@Tag("benchmark")
+class AsyncMemberRepositoryBenchmarkTest {
+
+    static final String TCP_URL = "jdbc:h2:tcp://localhost/~/test";
+    static final String MEM_URL = "jdbc:h2:mem:asyncBenchmark;DB_CLOSE_DELAY=-1";
+    static final int MAX_CONCURRENCY = 64;
+    static final int MEMBERS = 1_000;
+    static final long DURATION_MILLIS = 2_000;
+
+    @Test
+    void throughputByConcurrency() throws InterruptedException {
+        String url = System.getProperty("benchmark.url", reachable(TCP_URL) ? TCP_URL : MEM_URL);
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setPoolName("async-benchmark");
+        config.setUrl(url);
+        config.setMinSize(1);
+        config.setMaxSize(MAX_CONCURRENCY);
+        try (ConnectionPool pool = new ConnectionPool(config)) {
+            JdbcTemplate template = new JdbcTemplate(pool);
+            template.execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+            template.update("delete from member where member_id like 'async%'");
+            MemberRepository repository = new MemberRepositoryV5(pool);
+            for (int i = 0; i < MEMBERS; i++) {
+                repository.save(new Member("async" + i, i));
+            }
+
+            log.info("url = {}", url);
+            double asyncSingle = 0;
+            double asyncMax = 0;
+            for (int concurrency : new int[]{1, 4, 16, MAX_CONCURRENCY}) {
+                double blocking = blocking(repository, concurrency);
+                double async;
+                try (AsyncMemberRepository asyncRepository = new AsyncMemberRepository(repository, MAX_CONCURRENCY)) {
+                    async = async(asyncRepository, concurrency);
+                }
+                log.info("concurrency = {}, blocking = {} ops/s, async = {} ops/s", concurrency, format(blocking), format(async));
+                if (concurrency == 1) {
+                    asyncSingle = async;
+                }
+                asyncMax = async;
+            }
+            template.update("delete from member where member_id like 'async%'");
+
+            assertThat(asyncMax).isGreaterThan(asyncSingle);
+        }
+    }
+
+    private double blocking(MemberRepository repository, int concurrency) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS);
+        for (int t = 0; t < concurrency; t++) {
+            executor.submit(() -> {
+                while (System.nanoTime() < end) {
+                    repository.findById(randomMemberId());
+                    ops.increment();
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(DURATION_MILLIS + 10_000, TimeUnit.MILLISECONDS)).isTrue();
+        return ops.sum() * 1_000.0 / DURATION_MILLIS;
+    }
+
+    private double async(AsyncMemberRepository repository, int concurrency) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        Semaphore window = new Semaphore(concurrency);
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS);
+        while (System.nanoTime() < end) {
+            window.acquire();
+            repository.findById(randomMemberId()).whenComplete((member, e) -> {
+                ops.increment();
+                window.release();
+            });
+        }
+        // 띄워 둔 요청이 모두 끝날 때까지 기다린다.
+        window.acquire(concurrency);
+        return ops.sum() * 1_000.0 / DURATION_MILLIS;
+    }
+
+    private static String randomMemberId() {
+        return "async" + ThreadLocalRandom.current().nextInt(MEMBERS);
+    }
+
+    private static boolean reachable(String url) {
+        try (Connection con = DriverManager.getConnection(url, "sa", "")) {
+            return con.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static String format(double opsPerSecond) {
+        return String.format("%,.0f", opsPerSecond);
+    }
+}
@@ -0,0 +1,130 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncMemberRepositoryTest {
+
+    DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:asyncRepository;DB_CLOSE_DELAY=-1", "sa", "");
+    JdbcTemplate template = new JdbcTemplate(dataSource);
+
+    @BeforeEach
+    void beforeEach() {
+        template.execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+    }
+
+    @AfterEach
+    void afterEach() {
+        template.update("delete from member");
+    }
+
+    @Test
+    void crud() throws Exception {
+        try (AsyncMemberRepository repository = new AsyncMemberRepository(new MemberRepositoryV5(dataSource))) {
+            Member member = new Member("memberA", 10000);
+            assertThat(repository.save(member).get(5, TimeUnit.SECONDS)).isEqualTo(member);
+            assertThat(repository.findById("memberA").get(5, TimeUnit.SECONDS)).isEqualTo(member);
+
+            repository.update("memberA", 20000).get(5, TimeUnit.SECONDS);
+            assertThat(repository.findById("memberA").get(5, TimeUnit.SECONDS).getMoney()).isEqualTo(20000);
+
+            repository.delete("memberA").get(5, TimeUnit.SECONDS);
+            assertThat(template.queryForObject("select count(*) from member", Integer.class)).isZero();
+        }
+    }
+
+    @Test
+    void exceptionsAreTheDelegates() throws Exception {
+        for (MemberRepository delegate : List.of(new MemberRepositoryV4_2(dataSource), new MemberRepositoryV5(dataSource))) {
+            try (AsyncMemberRepository repository = new AsyncMemberRepository(delegate)) {
+                repository.save(new Member("memberA", 10000)).get(5, TimeUnit.SECONDS);
+
+                CompletableFuture<Member> duplicate = repository.save(new Member("memberA", 10000));
+                assertThatThrownBy(() -> duplicate.get(5, TimeUnit.SECONDS))
+                        .isInstanceOf(ExecutionException.class)
+                        .cause().isInstanceOf(DuplicateKeyException.class);
+                // 다음 단계에는 CompletionException 으로 감싸지 않은 예외가 넘어간다.
+                assertThat(duplicate.exceptionally(e -> {
+                    assertThat(e).isInstanceOf(DuplicateKeyException.class);
+                    return null;
+                }).get(5, TimeUnit.SECONDS)).isNull();
+
+                template.update("delete from member");
+            }
+        }
+    }
+
+    @Test
+    void maxInFlight() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        MemberRepository slow = (MemberRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MemberRepository.class}, (proxy, method, args) -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    release.await();
+                    running.decrementAndGet();
+                    return new Member((String) args[0], 0);
+                });
+
+        try (AsyncMemberRepository repository = new AsyncMemberRepository(slow, 4)) {
+            List<CompletableFuture<Member>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(repository.findById("member" + i));
+            }
+            // 호출한 스레드는 막히지 않고, DB 로는 4 개까지만 나간다.
+            Thread.sleep(200);
+            assertThat(maxRunning.get()).isEqualTo(4);
+
+            release.countDown();
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            assertThat(maxRunning.get()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void rejectsBeyondMaxQueued() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        MemberRepository slow = (MemberRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MemberRepository.class}, (proxy, method, args) -> {
+                    release.await();
+                    return new Member((String) args[0], 0);
+                });
+
+        try (AsyncMemberRepository repository = new AsyncMemberRepository(slow, 2, 3)) {
+            List<CompletableFuture<Member>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(repository.findById("member" + i));
+            }
+            // 실행 중 2 개, 대기 3 개가 차면 더 받지 않는다.
+            CompletableFuture<Member> rejected = repository.findById("member5");
+            assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isInstanceOf(RejectedExecutionException.class);
+
+            release.countDown();
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            // 끝난 작업만큼 다시 받는다.
+            assertThat(repository.findById("member6").get(5, TimeUnit.SECONDS).getMemberId()).isEqualTo("member6");
+        }
+    }
+}
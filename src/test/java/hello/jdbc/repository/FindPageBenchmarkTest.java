@@ -0,0 +1,93 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ *  keyset 페이징(findPage)과 offset 페이징의 1페이지, 10,000페이지 조회 시간
+ *  기본 1,000만 건, 임베디드 H2 파일 DB(build/h2/page-benchmark)에 한 번 만들어 두고 다시 사용한다.
+ *  offset 은 비교용으로 로그만 남긴다. (H2 는 where 없는 기본 키 순서 조회의 offset 을 B-tree 의 행 수로 건너뛰어서 빠르다.)
+ *  행 수는 -Dbenchmark.rows 로 바꿀 수 있다.
+ *  ./gradlew benchmark 로 실행
+ */
+@Slf4j
+@Tag("benchmark")
+class FindPageBenchmarkTest {
+
+    static final long ROWS = Long.getLong("benchmark.rows", 10_000_000L);
+    static final int PAGE_SIZE = 100;
+    static final int DEEP_PAGE = 10_000;
+    static final int WARMUP = 1_000;
+    static final int ITERATIONS = 2_000;
+
+    @Test
+    void perPageLatency() {
+        long deepPage = Math.min(DEEP_PAGE, ROWS / PAGE_SIZE);
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:h2:file:./build/h2/page-benchmark", "sa", "", true);
+        try {
+            JdbcTemplate template = new JdbcTemplate(dataSource);
+            populate(template);
+            MemberRepository repository = new MemberRepositoryV5(dataSource);
+
+            // deepPage 번째 페이지의 커서 = 그 앞 페이지의 마지막 member_id
+            String deepCursor = memberId((deepPage - 1) * PAGE_SIZE);
+            double keysetFirst = measure(i -> repository.findPage(null, PAGE_SIZE));
+            double keysetDeep = measure(i -> repository.findPage(deepCursor, PAGE_SIZE));
+            double offsetFirst = measure(i -> offsetPage(template, 0));
+            double offsetDeep = measure(i -> offsetPage(template, (deepPage - 1) * PAGE_SIZE));
+
+            log.info("rows = {}, pageSize = {}, keyset page 1 = {}us, page {} = {}us / offset page 1 = {}us, page {} = {}us",
+                    ROWS, PAGE_SIZE, format(keysetFirst), deepPage, format(keysetDeep),
+                    format(offsetFirst), deepPage, format(offsetDeep));
+            assertThat(repository.findPage(deepCursor, PAGE_SIZE).getMembers().get(0).getMemberId())
+                    .isEqualTo(memberId((deepPage - 1) * PAGE_SIZE + 1));
+            // 깊은 페이지도 첫 페이지와 같은 범위의 시간이 걸린다.
+            assertThat(keysetDeep).isLessThan(keysetFirst * 3);
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private void populate(JdbcTemplate template) {
+        template.execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+        Long count = template.queryForObject("select count(*) from member", Long.class);
+        if (count != null && count == ROWS) {
+            return;
+        }
+        long start = System.nanoTime();
+        template.update("delete from member");
+        // m000000001 ... 처럼 자리수를 맞춰서 문자열 순서와 숫자 순서를 같게 한다.
+        template.update("insert into member(member_id, money) select 'm' || lpad(x, 9, '0'), 0 from system_range(1, ?)", ROWS);
+        log.info("populated {} rows in {}s", ROWS, (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    private void offsetPage(JdbcTemplate template, long offset) {
+        template.queryForList("select * from member order by member_id limit ? offset ?", PAGE_SIZE, offset);
+    }
+
+    private static String memberId(long n) {
+        return "m" + String.format("%09d", n);
+    }
+
+    private static double measure(IntConsumer page) {
+        for (int i = 0; i < WARMUP; i++) {
+            page.accept(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            page.accept(i);
+        }
+        return (System.nanoTime() - start) / 1_000.0 / ITERATIONS;
+    }
+
+    private static String format(double micros) {
+        return String.format("%.1f", micros);
+    }
+}
@@ -0,0 +1,88 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryFixture.Implementation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.sql.DataSource;
+
+import static hello.jdbc.repository.MemberRepositoryFixture.deleteAll;
+import static hello.jdbc.repository.MemberRepositoryFixture.memoryDataSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberRepositoryAddMoneyTest {
+
+    DataSource dataSource = memoryDataSource("addMoney");
+
+    @AfterEach
+    void afterEach() {
+        deleteAll(dataSource);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void addMoney(Implementation implementation) {
+        MemberRepository repository = implementation.create(dataSource);
+        repository.save(new Member("memberA", 10000));
+
+        assertThat(repository.addMoney("memberA", 500)).isTrue();
+        assertThat(repository.addMoney("memberA", -200)).isTrue();
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(10300);
+        assertThat(repository.addMoney("nobody", 500)).isFalse();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void subtractMoneyIfSufficient(Implementation implementation) {
+        MemberRepository repository = implementation.create(dataSource);
+        repository.save(new Member("memberA", 1000));
+
+        assertThat(repository.subtractMoneyIfSufficient("memberA", 600)).isTrue();
+        assertThat(repository.subtractMoneyIfSufficient("memberA", 600)).isFalse(); // 400 남음
+        assertThat(repository.subtractMoneyIfSufficient("memberA", 400)).isTrue();
+        assertThat(repository.findById("memberA").getMoney()).isZero();
+        assertThat(repository.subtractMoneyIfSufficient("nobody", 1)).isFalse();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void subtractMoneyRejectsNonPositiveAmount(Implementation implementation) {
+        MemberRepository repository = implementation.create(dataSource);
+        repository.save(new Member("memberA", 1000));
+
+        assertThatThrownBy(() -> repository.subtractMoneyIfSufficient("memberA", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repository.subtractMoneyIfSufficient("memberA", -500))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(1000);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void transferMoney(Implementation implementation) {
+        MemberRepository repository = implementation.create(dataSource);
+        repository.save(new Member("memberA", 1000));
+        repository.save(new Member("memberB", 1000));
+
+        assertThat(repository.transferMoney("memberA", "memberB", 600)).isEqualTo(2);
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(400);
+        assertThat(repository.findById("memberB").getMoney()).isEqualTo(1600);
+
+        // 금액이 0 이하면 어떤 행도 바뀌지 않는다. (음수 금액으로 memberB 의 돈을 가져올 수 없다.)
+        assertThat(repository.transferMoney("memberA", "memberB", -600)).isZero();
+        assertThat(repository.transferMoney("memberA", "memberB", 0)).isZero();
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(400);
+        assertThat(repository.findById("memberB").getMoney()).isEqualTo(1600);
+
+        // 잔액 부족, 없는 회원, 같은 회원 - 어떤 행도 바뀌지 않는다. (혼자 실행하면 트랜잭션 없이도 돈이 생기거나 사라지지 않는다.)
+        assertThat(repository.transferMoney("memberA", "memberB", 600)).isZero();
+        assertThat(repository.transferMoney("memberA", "nobody", 100)).isZero();
+        assertThat(repository.transferMoney("nobody", "memberB", 100)).isZero();
+        assertThat(repository.transferMoney("memberA", "memberA", 100)).isZero();
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(400);
+        assertThat(repository.findById("memberB").getMoney()).isEqualTo(1600);
+    }
+}
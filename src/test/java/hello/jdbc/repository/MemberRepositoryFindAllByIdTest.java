@@ -0,0 +1,128 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.connection.ConnectionPool;
+import hello.jdbc.connection.ConnectionPoolConfig;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryFixture.Implementation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hello.jdbc.repository.MemberRepositoryFixture.deleteAll;
+import static hello.jdbc.repository.MemberRepositoryFixture.memoryUrl;
+import static hello.jdbc.repository.MemberRepositoryFixture.members;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberRepositoryFindAllByIdTest {
+
+    ConnectionPool pool;
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    AtomicInteger submitted = new AtomicInteger();
+    Executor executor = command -> {
+        submitted.incrementAndGet();
+        executorService.execute(command);
+    };
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl(memoryUrl("findAllById"));
+        config.setMinSize(0);
+        config.setMaxSize(4);
+        pool = new ConnectionPool(config);
+        new MemberRepositoryV5(pool).saveAll(members(600));
+    }
+
+    @AfterEach
+    void afterEach() {
+        executorService.shutdownNow();
+        deleteAll(pool);
+        pool.close();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void findsExistingMembersOnly(Implementation implementation) {
+        MemberRepository repository = implementation.create(pool);
+        Map<String, Member> found = repository.findAllById(List.of("member1", "member2", "member2", "nobody"));
+        assertThat(found).containsOnlyKeys("member1", "member2");
+        assertThat(found.get("member2").getMoney()).isEqualTo(2);
+
+        assertThat(repository.findAllById(List.of())).isEmpty();
+    }
+
+    @Test
+    void paddedPowerOfTwoChunks() {
+        List<List<String>> chunks = InListSupport.chunks(ids(600));
+        assertThat(chunks).extracting(List::size).containsExactly(256, 256, 128);
+        assertThat(chunks.get(2)).endsWith("member599", "member599"); // 남는 자리는 마지막 id 로 채운다.
+        assertThat(InListSupport.chunks(List.of("a", "b", "c"))).containsExactly(List.of("a", "b", "c", "c"));
+        assertThat(InListSupport.sql(4)).isEqualTo("select * from member where member_id in (?, ?, ?, ?)");
+    }
+
+    @Test
+    void reusesStatementShape() {
+        MemberRepository repository = new MemberRepositoryV4_2(pool);
+        repository.findAllById(ids(3));
+        long misses = pool.getStatementCacheMisses();
+
+        // 3개, 4개 모두 in (?, ?, ?, ?) 를 사용한다.
+        assertThat(repository.findAllById(ids(4))).hasSize(4);
+        assertThat(pool.getStatementCacheMisses()).isEqualTo(misses);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void parallelChunks(Implementation implementation) {
+        List<String> ids = ids(600);
+        ids.add("nobody");
+        MemberRepository repository = implementation.create(pool);
+        assertThat(repository.findAllById(ids, executor)).hasSize(600);
+        assertThat(submitted).hasValue(3);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void sequentialInsideTransaction(Implementation implementation) {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(pool));
+        MemberRepository repository = implementation.create(pool);
+        tx.executeWithoutResult(status -> assertThat(repository.findAllById(ids(600), executor)).hasSize(600));
+        assertThat(submitted).hasValue(0);
+    }
+
+    @Test
+    void shardedRepository() {
+        List<DataSource> shards = ShardedMemberRepositoryTest.shards("findAllByIdShard", 3);
+        try (ShardedMemberRepository repository = new ShardedMemberRepository(shards)) {
+            repository.saveAll(members(100));
+            List<String> ids = ids(100);
+            ids.add("nobody");
+
+            assertThat(repository.findAllById(ids)).hasSize(100);
+            assertThat(repository.findAllById(ids, executor)).hasSize(100);
+        } finally {
+            deleteAll(shards);
+        }
+    }
+
+    private static List<String> ids(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add("member" + i);
+        }
+        return ids;
+    }
+}
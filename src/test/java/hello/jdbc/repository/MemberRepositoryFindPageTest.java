@@ -0,0 +1,110 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.MemberPage;
+import hello.jdbc.repository.MemberRepositoryFixture.Implementation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static hello.jdbc.repository.MemberRepositoryFixture.deleteAll;
+import static hello.jdbc.repository.MemberRepositoryFixture.members;
+import static hello.jdbc.repository.MemberRepositoryFixture.memoryDataSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberRepositoryFindPageTest {
+
+    DataSource dataSource = memoryDataSource("findPage");
+
+    @AfterEach
+    void afterEach() {
+        deleteAll(dataSource);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void walksAllPagesInKeyOrder(Implementation implementation) {
+        new MemberRepositoryV5(dataSource).saveAll(members(25));
+        MemberRepository repository = implementation.create(dataSource);
+        List<Integer> sizes = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            MemberPage page = repository.findPage(cursor, 10);
+            sizes.add(page.getMembers().size());
+            page.getMembers().forEach(member -> ids.add(member.getMemberId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(sizes).containsExactly(10, 10, 5);
+        assertThat(ids).isSorted().hasSize(25).doesNotHaveDuplicates();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void lastFullPageHasNoCursor(Implementation implementation) {
+        new MemberRepositoryV5(dataSource).saveAll(members(20));
+        MemberRepository repository = implementation.create(dataSource);
+        MemberPage first = repository.findPage(null, 10);
+        assertThat(first.hasNext()).isTrue();
+        assertThat(first.getNextCursor()).isEqualTo("member17");
+
+        MemberPage second = repository.findPage(first.getNextCursor(), 10);
+        assertThat(second.getMembers()).hasSize(10);
+        assertThat(second.hasNext()).isFalse();
+
+        assertThat(repository.findPage("zzz", 10).getMembers()).isEmpty();
+        assertThatThrownBy(() -> repository.findPage(null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void limitOutOfRangeIsRejected(Implementation implementation) {
+        new MemberRepositoryV5(dataSource).saveAll(members(5));
+        assertLimitRange(implementation.create(dataSource));
+    }
+
+    @Test
+    void shardedLimitOutOfRangeIsRejected() {
+        List<DataSource> shards = ShardedMemberRepositoryTest.shards("findPageLimitShard", 2);
+        try (ShardedMemberRepository sharded = new ShardedMemberRepository(shards)) {
+            assertLimitRange(sharded);
+        }
+    }
+
+    @Test
+    void shardedRepositoryMergesShards() {
+        List<DataSource> shards = ShardedMemberRepositoryTest.shards("findPageShard", 3);
+        try (ShardedMemberRepository repository = new ShardedMemberRepository(shards)) {
+            repository.saveAll(members(50));
+
+            List<String> ids = new ArrayList<>();
+            String cursor = null;
+            do {
+                MemberPage page = repository.findPage(cursor, 7);
+                page.getMembers().forEach(member -> ids.add(member.getMemberId()));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            assertThat(ids).isSorted().hasSize(50).doesNotHaveDuplicates();
+        } finally {
+            deleteAll(shards);
+        }
+    }
+
+    private static void assertLimitRange(MemberRepository repository) {
+        // limit + 1 이 넘치는 Integer.MAX_VALUE 도 SQL 을 실행하기 전에 막는다.
+        for (int limit : new int[]{-1, 0, MemberRepository.MAX_PAGE_SIZE + 1, Integer.MAX_VALUE}) {
+            assertThatThrownBy(() -> repository.findPage(null, limit))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("limit = " + limit);
+        }
+        assertThat(repository.findPage(null, MemberRepository.MAX_PAGE_SIZE).hasNext()).isFalse();
+    }
+}
@@ -0,0 +1,75 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ *  저장소 테스트가 같이 쓰는 준비물
+ *  인메모리 H2 는 schema.sql 로 member 테이블과 함수를 만들고, 같은 시나리오를 V4_1, V4_2, V5 로 돌린다.
+ *  @ParameterizedTest + @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations") 로
+ *  구현체마다 따로 실행하므로 하나가 실패해도 나머지는 실행되고, 테스트 이름에 실패한 구현체가 나온다.
+ */
+final class MemberRepositoryFixture {
+
+    private MemberRepositoryFixture() {
+    }
+
+    static DataSource memoryDataSource(String name) {
+        return new DriverManagerDataSource(memoryUrl(name), "sa", "");
+    }
+
+    static String memoryUrl(String name) {
+        return "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:schema.sql'";
+    }
+
+    enum Implementation {
+        V4_1(MemberRepositoryV4_1::new),
+        V4_2(MemberRepositoryV4_2::new),
+        V5(MemberRepositoryV5::new);
+
+        private final Function<DataSource, MemberRepository> factory;
+
+        Implementation(Function<DataSource, MemberRepository> factory) {
+            this.factory = factory;
+        }
+
+        MemberRepository create(DataSource dataSource) {
+            return factory.apply(dataSource);
+        }
+    }
+
+    static Stream<Implementation> implementations() {
+        return Stream.of(Implementation.values());
+    }
+
+    /**
+     *  member0, member1, ... 의 잔액은 순번과 같다.
+     */
+    static List<Member> members(int count) {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            members.add(new Member("member" + i, i));
+        }
+        return members;
+    }
+
+    static int count(DataSource dataSource) {
+        return new JdbcTemplate(dataSource).queryForObject("select count(*) from member", Integer.class);
+    }
+
+    static void deleteAll(DataSource dataSource) {
+        new JdbcTemplate(dataSource).update("delete from member");
+    }
+
+    static void deleteAll(Collection<? extends DataSource> dataSources) {
+        dataSources.forEach(MemberRepositoryFixture::deleteAll);
+    }
+}
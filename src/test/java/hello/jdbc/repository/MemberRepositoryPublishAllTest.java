@@ -0,0 +1,159 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.connection.ConnectionPool;
+import hello.jdbc.connection.ConnectionPoolConfig;
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberRepositoryPublishAllTest {
+
+    ConnectionPool pool;
+    MemberRepositoryV4_2 repository;
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:publishAll;DB_CLOSE_DELAY=-1");
+        config.setMinSize(0);
+        pool = new ConnectionPool(config);
+        new JdbcTemplate(pool).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+
+        repository = new MemberRepositoryV4_2(pool);
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            members.add(new Member(String.format("m%04d", i), i));
+        }
+        repository.saveAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(pool).execute("drop table if exists member");
+        pool.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void publishAll() throws Exception {
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        repository.publishAll(executor).subscribe(subscriber);
+
+        subscriber.terminated.get(5, TimeUnit.SECONDS);
+        assertThat(subscriber.received).hasSize(1000);
+        assertThat(subscriber.error).isNull();
+        assertThat(pool.getActiveConnections()).isZero();
+    }
+
+    @Test
+    void readsOnlyWhatIsRequested() throws Exception {
+        TestSubscriber subscriber = new TestSubscriber(10);
+        repository.publishAll(executor).subscribe(subscriber);
+
+        awaitIdle();
+        assertThat(subscriber.received).hasSize(10);
+        assertThat(subscriber.terminated).isNotDone();
+        assertThat(pool.getActiveConnections()).isEqualTo(1);
+
+        subscriber.subscription.request(5);
+        awaitIdle();
+        assertThat(subscriber.received).hasSize(15);
+        assertThat(subscriber.received.get(14).getMemberId()).isEqualTo("m0014");
+    }
+
+    @Test
+    void cancelReleasesConnection() throws Exception {
+        TestSubscriber subscriber = new TestSubscriber(10);
+        repository.publishAll(executor).subscribe(subscriber);
+        awaitIdle();
+        assertThat(pool.getActiveConnections()).isEqualTo(1);
+
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(10);
+        awaitIdle();
+        assertThat(pool.getActiveConnections()).isZero();
+        assertThat(subscriber.received).hasSize(10);
+        assertThat(subscriber.terminated).isNotDone();
+    }
+
+    @Test
+    void invalidRequestSignalsError() throws Exception {
+        TestSubscriber subscriber = new TestSubscriber(0);
+        repository.publishAll(executor).subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        subscriber.terminated.get(5, TimeUnit.SECONDS);
+        assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void sqlExceptionIsTranslated() throws Exception {
+        new JdbcTemplate(pool).execute("drop table member");
+
+        TestSubscriber subscriber = new TestSubscriber(1);
+        repository.publishAll(executor).subscribe(subscriber);
+
+        subscriber.terminated.get(5, TimeUnit.SECONDS);
+        assertThat(subscriber.error).isInstanceOf(BadSqlGrammarException.class);
+        assertThat(pool.getActiveConnections()).isZero();
+    }
+
+    /**
+     *  executor 는 스레드가 하나라서 빈 작업이 끝났으면 그 전에 예약된 drain 도 끝난 것이다.
+     *  drain 도중에 들어온 request(), cancel() 은 그 drain 이 끝나기 전에 처리한다.
+     */
+    private void awaitIdle() throws Exception {
+        executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    static class TestSubscriber implements Flow.Subscriber<Member> {
+        final long initialRequest;
+        final List<Member> received = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Void> terminated = new CompletableFuture<>();
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        TestSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(Member item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            terminated.complete(null);
+        }
+
+        @Override
+        public void onComplete() {
+            terminated.complete(null);
+        }
+    }
+}
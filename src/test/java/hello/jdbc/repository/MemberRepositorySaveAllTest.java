@@ -0,0 +1,114 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryFixture.Implementation;
+import hello.jdbc.repository.ex.BatchUpdateDataAccessException;
+import hello.jdbc.repository.ex.BatchUpdateFailure;
+import hello.jdbc.repository.ex.MyBatchUpdateException;
+import hello.jdbc.repository.ex.MyDuplicateKeyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static hello.jdbc.repository.MemberRepositoryFixture.count;
+import static hello.jdbc.repository.MemberRepositoryFixture.deleteAll;
+import static hello.jdbc.repository.MemberRepositoryFixture.memoryDataSource;
+import static hello.jdbc.repository.MemberRepositoryFixture.members;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+/**
+ *  V4_1, V4_2, V5 의 saveAll 을 같은 시나리오로 확인한다.
+ */
+class MemberRepositorySaveAllTest {
+
+    DataSource dataSource = memoryDataSource("saveAll");
+    JdbcTemplate template = new JdbcTemplate(dataSource);
+
+    @AfterEach
+    void afterEach() {
+        deleteAll(dataSource);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void savesInChunks(Implementation implementation) {
+        MemberRepository repository = implementation.create(dataSource);
+        repository.saveAll(members(25), 10);
+        assertThat(count(dataSource)).isEqualTo(25);
+        assertThat(repository.findById("member24").getMoney()).isEqualTo(24);
+
+        repository.saveAll(List.of());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void commitsEarlierChunksAndReportsFailedRows(Implementation implementation) {
+        MemberRepository repository = implementation.create(dataSource);
+        template.update("insert into member(member_id, money) values('member13', 0)");
+
+        Throwable thrown = catchThrowable(() -> repository.saveAll(members(25), 10));
+        // V4_2, V5 는 배치 실패도 스프링 예외 추상화(DataAccessException)로 던진다.
+        assertThat(thrown).isInstanceOf(batchExceptionOf(implementation));
+        BatchUpdateFailure e = (BatchUpdateFailure) thrown;
+
+        // 0 ~ 9 는 커밋, 10 ~ 19 는 롤백, 20 ~ 24 는 실행하지 않는다.
+        assertThat(e.getCompletedRows()).isEqualTo(10);
+        assertThat(e.getFailures()).hasSize(1);
+        BatchUpdateFailure.RowFailure failure = e.getFailures().get(0);
+        assertThat(failure.getIndex()).isEqualTo(13);
+        assertThat(failure.getMember().getMemberId()).isEqualTo("member13");
+        assertThat(failure.getCause()).isInstanceOf(implementation == Implementation.V4_1
+                ? MyDuplicateKeyException.class : DuplicateKeyException.class);
+        assertThat(count(dataSource)).isEqualTo(11);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void rollsBackEverythingInsideTransaction(Implementation implementation) {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        MemberRepository repository = implementation.create(dataSource);
+        template.update("insert into member(member_id, money) values('member13', 0)");
+
+        assertThatThrownBy(() -> tx.executeWithoutResult(status -> repository.saveAll(members(25), 10)))
+                .isInstanceOf(batchExceptionOf(implementation));
+        assertThat(count(dataSource)).isEqualTo(1);
+    }
+
+    @Test
+    void shardedRepositoryReportsOriginalIndex() {
+        List<DataSource> shards = ShardedMemberRepositoryTest.shards("saveAllShard", 3);
+        try (ShardedMemberRepository repository = new ShardedMemberRepository(shards)) {
+            repository.save(new Member("member42", 0));
+
+            // 샤드는 MemberRepositoryV5 이므로 BatchUpdateDataAccessException 을 그대로 던진다.
+            BatchUpdateDataAccessException e = catchThrowableOfType(
+                    () -> repository.saveAll(members(100), 10), BatchUpdateDataAccessException.class);
+            assertThat(e.getFailures()).extracting(BatchUpdateFailure.RowFailure::getIndex).containsExactly(42);
+            // 앞 샤드에서 커밋된 행까지 센다 - 미리 넣어 둔 member42 를 빼면 커밋된 행 수와 같다.
+            assertThat(e.getCompletedRows()).isEqualTo(repository.count() - 1);
+        } finally {
+            deleteAll(shards);
+        }
+    }
+
+    private static Class<? extends RuntimeException> batchExceptionOf(Implementation implementation) {
+        return implementation == Implementation.V4_1 ? MyBatchUpdateException.class : BatchUpdateDataAccessException.class;
+    }
+
+    @Test
+    void invalidBatchSize() {
+        assertThatThrownBy(() -> new MemberRepositoryV5(dataSource).saveAll(members(1), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,77 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryFixture.Implementation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static hello.jdbc.repository.MemberRepositoryFixture.count;
+import static hello.jdbc.repository.MemberRepositoryFixture.deleteAll;
+import static hello.jdbc.repository.MemberRepositoryFixture.memoryDataSource;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberRepositorySaveOrUpdateTest {
+
+    DataSource dataSource = memoryDataSource("saveOrUpdate");
+
+    @AfterEach
+    void afterEach() {
+        deleteAll(dataSource);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void insertsThenUpdates(Implementation implementation) {
+        MemberRepository repository = implementation.create(dataSource);
+        repository.saveOrUpdate(new Member("memberA", 10000));
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000);
+
+        // 이미 있으면 키 중복 예외 없이 money 만 바뀐다.
+        repository.saveOrUpdate(new Member("memberA", 20000));
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(20000);
+        assertThat(count(dataSource)).isEqualTo(1);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void batchMixesInsertsAndUpdates(Implementation implementation) {
+        MemberRepository repository = implementation.create(dataSource);
+        repository.saveAll(members(10, 0));
+
+        repository.saveOrUpdateAll(members(25, 7), 10);
+
+        assertThat(count(dataSource)).isEqualTo(25);
+        assertThat(repository.findById("member3").getMoney()).isEqualTo(7);
+        assertThat(repository.findById("member24").getMoney()).isEqualTo(7);
+    }
+
+    @Test
+    void shardedRepository() {
+        List<DataSource> shards = ShardedMemberRepositoryTest.shards("saveOrUpdateShard", 3);
+        try (ShardedMemberRepository repository = new ShardedMemberRepository(shards)) {
+            repository.saveAll(members(20, 0));
+            repository.saveOrUpdateAll(members(40, 5));
+            repository.saveOrUpdate(new Member("member0", 9));
+
+            assertThat(repository.count()).isEqualTo(40);
+            assertThat(repository.findById("member1").getMoney()).isEqualTo(5);
+            assertThat(repository.findById("member0").getMoney()).isEqualTo(9);
+        } finally {
+            deleteAll(shards);
+        }
+    }
+
+    private static List<Member> members(int count, int money) {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            members.add(new Member("member" + i, money));
+        }
+        return members;
+    }
+}
@@ -0,0 +1,152 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.connection.ConnectionPool;
+import hello.jdbc.connection.ConnectionPoolConfig;
+import hello.jdbc.connection.LeakDetectingDataSource;
+import hello.jdbc.connection.MeteredDataSource;
+import hello.jdbc.connection.ReadWriteRoutingDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryFixture.Implementation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.stream.Stream;
+
+import static hello.jdbc.repository.MemberRepositoryFixture.deleteAll;
+import static hello.jdbc.repository.MemberRepositoryFixture.members;
+import static hello.jdbc.repository.MemberRepositoryFixture.memoryUrl;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberRepositoryStreamAllTest {
+
+    ConnectionPool pool;
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        // 임베디드 H2 는 lazy 실행을 켜야 fetch size 만큼씩 읽는다.
+        config.setUrl(memoryUrl("streamAll") + ";LAZY_QUERY_EXECUTION=TRUE");
+        config.setMinSize(0);
+        pool = new ConnectionPool(config);
+        new MemberRepositoryV5(pool).saveAll(members(1200));
+    }
+
+    @AfterEach
+    void afterEach() {
+        deleteAll(pool);
+        pool.close();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void streamsWholeTable(Implementation implementation) {
+        MemberRepository repository = implementation.create(pool);
+        try (Stream<Member> members = repository.streamAll()) {
+            assertThat(members.mapToLong(Member::getMoney).sum()).isEqualTo(1199L * 1200 / 2);
+        }
+        assertThat(pool.getActiveConnections()).isZero();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void holdsConnectionUntilClosed(Implementation implementation) {
+        MemberRepository repository = implementation.create(pool);
+        Stream<Member> members = repository.streamAll();
+        Iterator<Member> iterator = members.iterator();
+        assertThat(iterator.next()).isNotNull();
+        assertThat(pool.getActiveConnections()).isEqualTo(1);
+
+        // 끝까지 읽지 않고 닫아도 커넥션을 반환한다.
+        members.close();
+        assertThat(pool.getActiveConnections()).isZero();
+    }
+
+    @Test
+    void closingStreamReleasesWrappedConnections() {
+        MeteredDataSource metered = new MeteredDataSource(pool);
+        LeakDetectingDataSource leakDetecting = new LeakDetectingDataSource(pool, 60_000, 1.0, 0);
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(pool, List.of(pool),
+                ReadWriteRoutingDataSource.ReplicaSelection.ROUND_ROBIN, Duration.ZERO);
+        Map<DataSource, IntSupplier> inUse = Map.of(
+                metered, metered::getInUse,
+                leakDetecting, leakDetecting::getOutstanding,
+                routing, () -> routing.getOutstanding(0));
+
+        try (leakDetecting) {
+            inUse.forEach((dataSource, count) -> {
+                // queryForStream 은 statement.getConnection() 을 닫는다 - 래퍼의 커넥션 프록시를 거쳐야 한다.
+                Stream<Member> members = new MemberRepositoryV5(dataSource).streamAll();
+                assertThat(members.iterator().next()).isNotNull();
+                assertThat(count.getAsInt()).isEqualTo(1);
+
+                members.close();
+                assertThat(count.getAsInt()).isZero();
+                assertThat(pool.getActiveConnections()).isZero();
+            });
+        }
+    }
+
+    @Test
+    void shardedRepositoryReadsShardsInTurn() {
+        List<DataSource> shards = ShardedMemberRepositoryTest.shards("streamAllShard", 3);
+        try (ShardedMemberRepository repository = new ShardedMemberRepository(shards)) {
+            repository.saveAll(members(100));
+            try (Stream<Member> members = repository.streamAll()) {
+                assertThat(members.map(Member::getMemberId).distinct().count()).isEqualTo(100);
+            }
+        } finally {
+            deleteAll(shards);
+        }
+    }
+
+    @Test
+    void shardedRepositoryOpensOneShardAtATime() {
+        List<MeteredDataSource> shards = ShardedMemberRepositoryTest.shards("streamAllLazyShard", 3).stream()
+                .map(MeteredDataSource::new).toList();
+        try (ShardedMemberRepository repository = new ShardedMemberRepository(List.copyOf(shards))) {
+            repository.saveAll(members(100));
+
+            // iterator() 로 읽어도 앞 샤드를 통째로 버퍼에 담지 않는다 - 읽는 동안 읽고 있는 샤드의 커넥션 하나만 잡는다.
+            Stream<Member> members = repository.streamAll();
+            Iterator<Member> iterator = members.iterator();
+            int read = 0;
+            while (iterator.hasNext()) {
+                iterator.next();
+                read++;
+                assertThat(shards.stream().mapToInt(MeteredDataSource::getInUse).sum()).isEqualTo(1);
+            }
+            assertThat(read).isEqualTo(100);
+            assertThat(shards.stream().mapToInt(MeteredDataSource::getInUse).sum()).isZero();
+            members.close();
+        } finally {
+            deleteAll(shards);
+        }
+    }
+
+    @Test
+    void closingShardedStreamEarlyReleasesConnection() {
+        List<MeteredDataSource> shards = ShardedMemberRepositoryTest.shards("streamAllCloseShard", 3).stream()
+                .map(MeteredDataSource::new).toList();
+        try (ShardedMemberRepository repository = new ShardedMemberRepository(List.copyOf(shards))) {
+            repository.saveAll(members(100));
+
+            Stream<Member> members = repository.streamAll();
+            assertThat(members.iterator().next()).isNotNull();
+            assertThat(shards.stream().mapToInt(MeteredDataSource::getInUse).sum()).isEqualTo(1);
+
+            members.close();
+            assertThat(shards.stream().mapToInt(MeteredDataSource::getInUse).sum()).isZero();
+        } finally {
+            deleteAll(shards);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryFixture.Implementation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.repository.MemberRepositoryFixture.deleteAll;
+import static hello.jdbc.repository.MemberRepositoryFixture.memoryDataSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ *  CALL TRANSFER_MONEY(...) - schema.sql 이 h2-functions.sql 로 함수를 등록한다.
+ */
+class MemberRepositoryTransferInDatabaseTest {
+
+    DataSource dataSource = memoryDataSource("transferInDatabase");
+    JdbcTemplate template = new JdbcTemplate(dataSource);
+
+    @AfterEach
+    void afterEach() {
+        deleteAll(dataSource);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void transferMoneyInDatabase(Implementation implementation) {
+        MemberRepository repository = implementation.create(dataSource);
+        repository.save(new Member("memberA", 1000));
+        repository.save(new Member("memberB", 1000));
+
+        assertThat(repository.transferMoneyInDatabase("memberA", "memberB", 600)).isTrue();
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(400);
+        assertThat(repository.findById("memberB").getMoney()).isEqualTo(1600);
+
+        // 실패하면 어느 행도 바뀌지 않는다. (롤백할 필요가 없다.)
+        assertThat(repository.transferMoneyInDatabase("memberA", "memberB", 600)).isFalse();
+        assertThat(repository.transferMoneyInDatabase("memberA", "nobody", 100)).isFalse();
+        assertThat(repository.transferMoneyInDatabase("nobody", "memberB", 100)).isFalse();
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(400);
+        assertThat(repository.findById("memberB").getMoney()).isEqualTo(1600);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void invalidArgumentsAreRejected(Implementation implementation) {
+        MemberRepository repository = implementation.create(dataSource);
+        repository.save(new Member("memberA", 1000));
+        repository.save(new Member("memberB", 1000));
+
+        // 함수를 부르기 전에 거절한다.
+        assertThatThrownBy(() -> repository.transferMoneyInDatabase("memberA", "memberA", 100))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repository.transferMoneyInDatabase("memberA", "memberB", -600))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repository.transferMoneyInDatabase("memberA", "memberB", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // 함수를 직접 불러도 아무것도 바꾸지 않는다.
+        assertThat(template.queryForObject(H2Functions.TRANSFER_MONEY, Integer.class, "memberA", "memberA", 100)).isZero();
+        assertThat(template.queryForObject(H2Functions.TRANSFER_MONEY, Integer.class, "memberA", "memberB", -600)).isZero();
+        assertThat(template.queryForObject(H2Functions.TRANSFER_MONEY, Integer.class, "memberA", "memberB", 0)).isZero();
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(1000);
+        assertThat(repository.findById("memberB").getMoney()).isEqualTo(1000);
+    }
+
+    @Test
+    void concurrentTransfersWithoutTransaction() throws InterruptedException {
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 10000));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 400; i++) {
+            boolean aToB = i % 2 == 0;
+            executor.execute(() -> {
+                if (aToB) {
+                    repository.transferMoneyInDatabase("memberA", "memberB", 10);
+                } else {
+                    repository.transferMoneyInDatabase("memberB", "memberA", 3);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000 - 2000 + 600);
+        assertThat(repository.findById("memberB").getMoney()).isEqualTo(10000 + 2000 - 600);
+    }
+
+    @Test
+    void register() {
+        // schema.sql 없이 만든 DB (tcp 서버처럼) 에 등록한다. 두 번 등록해도 된다.
+        DataSource plain = new DriverManagerDataSource("jdbc:h2:mem:registerFunctions;DB_CLOSE_DELAY=-1", "sa", "");
+        new JdbcTemplate(plain).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+        H2Functions.register(plain);
+        H2Functions.register(plain);
+
+        MemberRepository repository = new MemberRepositoryV5(plain);
+        repository.save(new Member("memberA", 1000));
+        repository.save(new Member("memberB", 0));
+        assertThat(repository.transferMoneyInDatabase("memberA", "memberB", 1000)).isTrue();
+        assertThat(repository.findById("memberB").getMoney()).isEqualTo(1000);
+    }
+
+    @Test
+    void registerReplacesOutdatedFunction() {
+        DataSource plain = new DriverManagerDataSource("jdbc:h2:mem:replaceFunctions;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate plainTemplate = new JdbcTemplate(plain);
+        plainTemplate.execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+        // 예전 버전 - 아무것도 바꾸지 않고 성공했다고 한다.
+        plainTemplate.execute("create alias TRANSFER_MONEY as $$ int transferMoney(String fromId, String toId, int money) { return 1; } $$");
+
+        H2Functions.register(plain);
+
+        MemberRepository repository = new MemberRepositoryV5(plain);
+        repository.save(new Member("memberA", 1000));
+        repository.save(new Member("memberB", 0));
+        assertThat(repository.transferMoneyInDatabase("memberA", "memberB", 5000)).isFalse();
+        assertThat(repository.transferMoneyInDatabase("memberA", "memberB", 1000)).isTrue();
+        assertThat(repository.findById("memberB").getMoney()).isEqualTo(1000);
+    }
+}
@@ -0,0 +1,91 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.repository.MemberRepositoryFixture.Implementation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static hello.jdbc.repository.MemberRepositoryFixture.deleteAll;
+import static hello.jdbc.repository.MemberRepositoryFixture.members;
+import static hello.jdbc.repository.MemberRepositoryFixture.memoryDataSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberRepositoryUpdateAllTest {
+
+    DataSource dataSource = memoryDataSource("updateAll");
+
+    @BeforeEach
+    void beforeEach() {
+        new MemberRepositoryV5(dataSource).saveAll(members(25));
+    }
+
+    @AfterEach
+    void afterEach() {
+        deleteAll(dataSource);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void returnsCountsInCallerOrder(Implementation implementation) {
+        MemberRepository repository = implementation.create(dataSource);
+        Map<String, Integer> moneyByMemberId = new LinkedHashMap<>();
+        for (int i = 0; i < 25; i++) {
+            moneyByMemberId.put("member" + i, 1000 + i);
+        }
+        moneyByMemberId.put("nobody", 0);
+
+        int[] counts = repository.updateAll(moneyByMemberId, 10);
+
+        assertThat(counts).hasSize(26);
+        assertThat(counts[0]).isEqualTo(1);
+        assertThat(counts[24]).isEqualTo(1);
+        assertThat(counts[25]).isZero(); // 없는 회원
+        assertThat(repository.findById("member24").getMoney()).isEqualTo(1024);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hello.jdbc.repository.MemberRepositoryFixture#implementations")
+    void joinsExistingTransaction(Implementation implementation) {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        MemberRepository repository = implementation.create(dataSource);
+        assertThatThrownBy(() -> tx.executeWithoutResult(status -> {
+            repository.updateAll(Map.of("member1", 0, "member2", 0), 1);
+            throw new IllegalStateException("rollback");
+        })).isInstanceOf(IllegalStateException.class);
+
+        // 묶음마다 커밋하지 않고 바깥 트랜잭션과 함께 롤백된다.
+        assertThat(repository.findById("member1").getMoney()).isEqualTo(1);
+        assertThat(repository.findById("member2").getMoney()).isEqualTo(2);
+    }
+
+    @Test
+    void shardedRepository() {
+        List<DataSource> shards = ShardedMemberRepositoryTest.shards("updateAllShard", 3);
+        try (ShardedMemberRepository repository = new ShardedMemberRepository(shards)) {
+            repository.saveAll(members(30));
+            Map<String, Integer> moneyByMemberId = new LinkedHashMap<>();
+            moneyByMemberId.put("nobody", 0);
+            for (int i = 0; i < 30; i++) {
+                moneyByMemberId.put("member" + i, 0);
+            }
+
+            int[] counts = repository.updateAll(moneyByMemberId);
+
+            assertThat(counts[0]).isZero();
+            assertThat(counts).containsOnly(0, 1).hasSize(31);
+            assertThat(repository.findAll()).allSatisfy(member -> assertThat(member.getMoney()).isZero());
+        } finally {
+            deleteAll(shards);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.connection.ConnectionPool;
+import hello.jdbc.connection.ConnectionPoolConfig;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ *  샤드 수(1, 2, 4, 8)에 따른 처리량
+ *  샤드마다 인메모리 H2 와 ConnectionPool 을 하나씩 두고, 여러 스레드가 findById 와 update 를 섞어서 실행한다.
+ *  ./gradlew benchmark 로 실행
+ */
+@Slf4j
+@Tag("benchmark")
+class ShardedMemberRepositoryBenchmarkTest {
+
+    static final int THREADS = 16;
+    static final int MEMBERS = 1_000;
+    static final long DURATION_MILLIS = 2_000;
+
+    @Test
+    void throughput() throws InterruptedException {
+        for (int shardCount : new int[]{1, 2, 4, 8}) {
+            double opsPerSecond = measure(shardCount);
+            log.info("shards = {}, throughput = {} ops/s", shardCount, String.format("%.0f", opsPerSecond));
+            assertThat(opsPerSecond).isPositive();
+        }
+    }
+
+    private double measure(int shardCount) throws InterruptedException {
+        List<ConnectionPool> pools = new ArrayList<>();
+        List<DataSource> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            ConnectionPoolConfig config = new ConnectionPoolConfig();
+            config.setPoolName("shard" + shardCount + "-" + i);
+            config.setUrl("jdbc:h2:mem:bench" + shardCount + "_" + i + ";DB_CLOSE_DELAY=-1");
+            config.setMinSize(1);
+            config.setMaxSize(THREADS);
+            ConnectionPool pool = new ConnectionPool(config);
+            new JdbcTemplate(pool).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+            pools.add(pool);
+            shards.add(pool);
+        }
+
+        LongAdder ops = new LongAdder();
+        try (ShardedMemberRepository repository = new ShardedMemberRepository(shards)) {
+            for (int i = 0; i < MEMBERS; i++) {
+                repository.save(new Member("m" + i, 0));
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS);
+            for (int t = 0; t < THREADS; t++) {
+                executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < end) {
+                        String memberId = "m" + random.nextInt(MEMBERS);
+                        if (random.nextInt(10) < 8) {
+                            repository.findById(memberId);
+                        } else {
+                            repository.update(memberId, random.nextInt(10000));
+                        }
+                        ops.increment();
+                    }
+                });
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(DURATION_MILLIS + 10_000, TimeUnit.MILLISECONDS)).isTrue();
+            assertThat(repository.count()).isEqualTo(MEMBERS);
+        } finally {
+            pools.forEach(pool -> {
+                new JdbcTemplate(pool).update("delete from member");
+                pool.close();
+            });
+        }
+        return ops.sum() * 1_000.0 / DURATION_MILLIS;
+    }
+}
@@ -0,0 +1,106 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ *  로컬 인메모리 H2 를 샤드로 사용한다.
+ */
+class ShardedMemberRepositoryTest {
+
+    List<DataSource> shards = shards("shardTest", 4);
+    ShardedMemberRepository repository = new ShardedMemberRepository(shards);
+
+    @AfterEach
+    void afterEach() {
+        repository.close();
+        shards.forEach(shard -> new JdbcTemplate(shard).update("delete from member"));
+    }
+
+    @Test
+    void crud() {
+        Member member = new Member("memberA", 10000);
+        repository.save(member);
+        assertThat(repository.findById("memberA")).isEqualTo(member);
+
+        repository.update("memberA", 20000);
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(20000);
+
+        repository.delete("memberA");
+        assertThatThrownBy(() -> repository.findById("memberA"))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+    }
+
+    @Test
+    void eachMemberLivesInOneShard() {
+        for (int i = 0; i < 200; i++) {
+            repository.save(new Member("member" + i, i));
+        }
+
+        List<Long> counts = repository.scatterGather(template -> template.queryForObject("select count(*) from member", Long.class));
+        assertThat(counts).hasSize(4).allSatisfy(count -> assertThat(count).isBetween(20L, 100L));
+        assertThat(repository.count()).isEqualTo(200);
+        assertThat(repository.findAll()).hasSize(200);
+
+        Integer inShard = new JdbcTemplate(shards.get(repository.shardIndex("member7")))
+                .queryForObject("select count(*) from member where member_id = 'member7'", Integer.class);
+        assertThat(inShard).isEqualTo(1);
+    }
+
+    @Test
+    void addingShardMovesFewMembers() {
+        List<DataSource> five = new ArrayList<>(shards);
+        five.add(shards("shardTestExtra", 1).get(0));
+        try (ShardedMemberRepository grown = new ShardedMemberRepository(five)) {
+            int moved = 0;
+            for (int i = 0; i < 10_000; i++) {
+                String memberId = "member" + i;
+                if (repository.shardIndex(memberId) != grown.shardIndex(memberId)) {
+                    moved++;
+                    // 옮겨지는 회원은 새 샤드로만 간다.
+                    assertThat(grown.shardIndex(memberId)).isEqualTo(4);
+                }
+            }
+            // 이상적으로는 1/5
+            assertThat(moved).isBetween(1_000, 3_000);
+        }
+    }
+
+    @Test
+    void crossShardTransferIsRejected() {
+        String fromId = "member0";
+        String toId = null;
+        for (int i = 1; toId == null; i++) {
+            if (repository.shardIndex("member" + i) != repository.shardIndex(fromId)) {
+                toId = "member" + i;
+            }
+        }
+        String otherShard = toId;
+
+        assertThatThrownBy(() -> repository.transferMoney(fromId, otherShard, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repository.transferMoneyInDatabase(fromId, otherShard, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    static List<DataSource> shards(String name, int count) {
+        List<DataSource> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + i + ";DB_CLOSE_DELAY=-1", "sa", "");
+            new JdbcTemplate(dataSource).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+            shards.add(dataSource);
+        }
+        return shards;
+    }
+}
@@ -0,0 +1,145 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.ConnectionPool;
+import hello.jdbc.connection.ConnectionPoolConfig;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.H2Functions;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ *  초당 이체 수 - MemberServiceV4(@Transactional, 조회 2번 + update 2번) vs MemberServiceV6(CALL 한 번, 트랜잭션 없음)
+ *  인메모리 H2 와 H2 서버(tcp) 에서 각각 잰다. H2 서버가 떠 있지 않으면 tcp 는 건너뛴다.
+ *  스레드마다 서로 다른 회원 두 명을 주고받게 해서 잠금 경합 없이 왕복 수의 차이만 본다.
+ *  ./gradlew benchmark 로 실행
+ */
+@Slf4j
+@Tag("benchmark")
+class InDatabaseTransferBenchmarkTest {
+
+    static final String MEM_URL = "jdbc:h2:mem:inDatabaseTransfer;DB_CLOSE_DELAY=-1";
+    static final String TCP_URL = System.getProperty("benchmark.tcp-url", "jdbc:h2:tcp://localhost/~/test");
+    static final int THREADS = 4;
+    static final int WARMUP = 2_000;
+    static final int ITERATIONS = 20_000;
+
+    @Test
+    void transferThroughput() {
+        compare("mem", MEM_URL);
+        if (reachable(TCP_URL)) {
+            compare("tcp", TCP_URL);
+        } else {
+            log.info("skip tcp, {} is not reachable", TCP_URL);
+        }
+    }
+
+    private void compare(String name, String url) {
+        double v4 = measure(name + "-V4", url, pool -> {
+            ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(new MemberRepositoryV5(pool)));
+            proxyFactory.addAdvice(new TransactionInterceptor((TransactionManager) new DataSourceTransactionManager(pool), new AnnotationTransactionAttributeSource()));
+            MemberServiceV4 service = (MemberServiceV4) proxyFactory.getProxy();
+            return thread -> service.accountTransfer(fromId(thread), toId(thread), 1);
+        });
+        double v6 = measure(name + "-V6", url, pool -> {
+            MemberServiceV6 service = new MemberServiceV6(new MemberRepositoryV5(pool));
+            return thread -> service.accountTransfer(fromId(thread), toId(thread), 1);
+        });
+
+        log.info("[{}] transfer V4 = {} ops/s, V6 = {} ops/s, V6/V4 = {}x",
+                name, format(v4), format(v6), String.format("%.2f", v6 / v4));
+        assertThat(v6).isGreaterThan(v4);
+    }
+
+    private double measure(String name, String url, Function<ConnectionPool, IntConsumer> transfer) {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setPoolName("transfer-" + name);
+        config.setUrl(url);
+        config.setMinSize(THREADS);
+        config.setMaxSize(THREADS);
+        try (ConnectionPool pool = new ConnectionPool(config)) {
+            JdbcTemplate template = new JdbcTemplate(pool);
+            template.execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+            H2Functions.register(pool);
+            MemberRepository repository = new MemberRepositoryV5(pool);
+            for (int thread = 0; thread < THREADS; thread++) {
+                repository.delete(fromId(thread));
+                repository.delete(toId(thread));
+                repository.save(new Member(fromId(thread), 1_000_000));
+                repository.save(new Member(toId(thread), 0));
+            }
+
+            IntConsumer operation = transfer.apply(pool);
+            run(operation, WARMUP);
+            long start = System.nanoTime();
+            run(operation, ITERATIONS);
+            double opsPerSecond = THREADS * (double) ITERATIONS / ((System.nanoTime() - start) / 1_000_000_000.0);
+
+            for (int thread = 0; thread < THREADS; thread++) {
+                assertThat(repository.findById(toId(thread)).getMoney()).isEqualTo(WARMUP + ITERATIONS);
+                repository.delete(fromId(thread));
+                repository.delete(toId(thread));
+            }
+            return opsPerSecond;
+        }
+    }
+
+    private static void run(IntConsumer operation, int iterations) {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int current = thread;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        operation.accept(current);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static boolean reachable(String url) {
+        try (Connection con = DriverManager.getConnection(url, "sa", "")) {
+            return con.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static String fromId(int thread) {
+        return "benchA" + thread;
+    }
+
+    private static String toId(int thread) {
+        return "benchB" + thread;
+    }
+
+    private static String format(double opsPerSecond) {
+        return String.format("%,.0f", opsPerSecond);
+    }
+}
@@ -0,0 +1,120 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.ConnectionPool;
+import hello.jdbc.connection.ConnectionPoolConfig;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4.TransferMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ *  TransferMode.ATOMIC - 조회 없이 두 문장으로 이체
+ */
+class MemberServiceV4AtomicTest {
+
+    ConnectionPool pool;
+    MemberRepository memberRepository;
+    MemberServiceV4 memberService;
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:atomicTransfer;DB_CLOSE_DELAY=-1");
+        config.setMinSize(0);
+        config.setMaxSize(8);
+        pool = new ConnectionPool(config);
+        new JdbcTemplate(pool).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+
+        memberRepository = new MemberRepositoryV5(pool);
+        ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV4(memberRepository, TransferMode.ATOMIC));
+        proxyFactory.addAdvice(new TransactionInterceptor((TransactionManager) new DataSourceTransactionManager(pool), new AnnotationTransactionAttributeSource()));
+        memberService = (MemberServiceV4) proxyFactory.getProxy();
+
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("memberB", 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(pool).update("delete from member");
+        pool.close();
+    }
+
+    @Test
+    void transfer() {
+        memberService.accountTransfer("memberA", "memberB", 2000);
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    void insufficientMoney() {
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberB", 10001))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void nonPositiveMoneyIsRejected() {
+        // 음수를 출금하면 fromId 에 입금되고 toId 에서 출금된다.
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberB", -2000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberB", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void rollbackWithdrawal() {
+        memberRepository.save(new Member("ex", 10000));
+
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "ex", 2000))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "nobody", 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void concurrentTransfersDoNotLoseUpdates() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 400; i++) {
+            boolean aToB = i % 2 == 0;
+            executor.execute(() -> {
+                if (aToB) {
+                    memberService.accountTransfer("memberA", "memberB", 10);
+                } else {
+                    memberService.accountTransfer("memberB", "memberA", 3);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        // 200 * 10 을 보내고 200 * 3 을 돌려받았다.
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10000 - 2000 + 600);
+        assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(10000 + 2000 - 600);
+    }
+}
@@ -0,0 +1,167 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.ConnectionPool;
+import hello.jdbc.connection.ConnectionPoolConfig;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ *  update 한 문장으로 이체
+ */
+class MemberServiceV5Test {
+
+    ConnectionPool pool;
+    MemberRepository memberRepository;
+    MemberServiceV5 memberService;
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:serviceV5;DB_CLOSE_DELAY=-1");
+        config.setMinSize(0);
+        config.setMaxSize(8);
+        pool = new ConnectionPool(config);
+        new JdbcTemplate(pool).execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+
+        memberRepository = new MemberRepositoryV5(pool);
+        ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV5(memberRepository));
+        proxyFactory.addAdvice(new TransactionInterceptor((TransactionManager) new DataSourceTransactionManager(pool), new AnnotationTransactionAttributeSource()));
+        memberService = (MemberServiceV5) proxyFactory.getProxy();
+
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("memberB", 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(pool).update("delete from member");
+        pool.close();
+    }
+
+    @Test
+    void accountTransfer() {
+        memberService.accountTransfer("memberA", "memberB", 2000);
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    void insufficientMoneyChangesNothing() {
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberB", 10001))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void nonPositiveMoneyIsRejected() {
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberB", -2000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberB", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void accountTransferEx() {
+        memberRepository.save(new Member("ex", 10000));
+
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "ex", 2000))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "nobody", 2000))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberA", 2000))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById("ex").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void concurrentTransfers() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 400; i++) {
+            boolean aToB = i % 2 == 0;
+            executor.execute(() -> {
+                if (aToB) {
+                    memberService.accountTransfer("memberA", "memberB", 10);
+                } else {
+                    memberService.accountTransfer("memberB", "memberA", 3);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10000 - 2000 + 600);
+        assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(10000 + 2000 - 600);
+    }
+
+    @Test
+    void concurrentDebitsConserveMoney() throws Exception {
+        // 잔액으로 한 번만 출금할 수 있는 회원에서 동시에 출금한다. 입금만 반영된 이체는 롤백돼야 한다.
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 50; round++) {
+                String fromId = "from" + round;
+                memberRepository.save(new Member(fromId, 100));
+                memberRepository.save(new Member("to" + round, 0));
+
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    String toId = "to" + round;
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            memberService.accountTransfer(fromId, toId, 100);
+                            return true;
+                        } catch (IllegalStateException e) {
+                            return false;
+                        }
+                    }));
+                }
+                start.countDown();
+                int succeeded = 0;
+                for (Future<Boolean> result : results) {
+                    if (result.get(30, TimeUnit.SECONDS)) {
+                        succeeded++;
+                    }
+                }
+
+                int from = memberRepository.findById(fromId).getMoney();
+                int to = memberRepository.findById("to" + round).getMoney();
+                assertThat(from + to).isEqualTo(100);
+                assertThat(succeeded).isEqualTo(1);
+                assertThat(from).isZero();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.ConnectionPool;
+import hello.jdbc.connection.ConnectionPoolConfig;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ *  DB 함수로 이체 - 트랜잭션 프록시 없이 사용한다.
+ */
+class MemberServiceV6Test {
+
+    ConnectionPool pool;
+    MemberRepository memberRepository;
+    MemberServiceV6 memberService;
+
+    @BeforeEach
+    void beforeEach() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setUrl("jdbc:h2:mem:serviceV6;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:schema.sql'");
+        config.setMinSize(0);
+        config.setMaxSize(8);
+        pool = new ConnectionPool(config);
+
+        memberRepository = new MemberRepositoryV5(pool);
+        memberService = new MemberServiceV6(memberRepository);
+
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("memberB", 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(pool).update("delete from member");
+        pool.close();
+    }
+
+    @Test
+    void accountTransfer() {
+        memberService.accountTransfer("memberA", "memberB", 2000);
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    void accountTransferFails() {
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberB", 10001))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "nobody", 2000))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberA", 2000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberB", -2000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "memberB", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(memberRepository.findById("memberA").getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById("memberB").getMoney()).isEqualTo(10000);
+    }
+}
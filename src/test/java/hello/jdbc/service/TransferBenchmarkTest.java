@@ -0,0 +1,101 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.ConnectionPool;
+import hello.jdbc.connection.ConnectionPoolConfig;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4.TransferMode;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ *  이체 한 번의 평균 시간
+ *  - MemberServiceV4 - findById 2번 + update 2번
+ *  - MemberServiceV4(ATOMIC) - update 2번
+ *  - MemberServiceV5 - update 1번
+ *  기본은 인메모리 H2, -Dbenchmark.url=jdbc:h2:tcp://localhost/~/test 처럼 주면 네트워크 왕복까지 포함해서 잰다.
+ *  ./gradlew benchmark 로 실행
+ */
+@Slf4j
+@Tag("benchmark")
+class TransferBenchmarkTest {
+
+    static final String URL = System.getProperty("benchmark.url", "jdbc:h2:mem:transferBenchmark;DB_CLOSE_DELAY=-1");
+    static final int WARMUP = 5_000;
+    static final int ITERATIONS = 50_000;
+
+    @Test
+    void transferLatency() {
+        double readModifyWrite = measure("V4", (repository, transactionManager) -> {
+            MemberServiceV4 service = proxy(new MemberServiceV4(repository, TransferMode.READ_MODIFY_WRITE), transactionManager);
+            return () -> service.accountTransfer("memberA", "memberB", 1);
+        });
+        double atomic = measure("V4(ATOMIC)", (repository, transactionManager) -> {
+            MemberServiceV4 service = proxy(new MemberServiceV4(repository, TransferMode.ATOMIC), transactionManager);
+            return () -> service.accountTransfer("memberA", "memberB", 1);
+        });
+        double singleStatement = measure("V5", (repository, transactionManager) -> {
+            MemberServiceV5 service = proxy(new MemberServiceV5(repository), transactionManager);
+            return () -> service.accountTransfer("memberA", "memberB", 1);
+        });
+
+        log.info("transfer V4 = {}us/op, V4(ATOMIC) = {}us/op, V5 = {}us/op, V4/V5 = {}x",
+                format(readModifyWrite), format(atomic), format(singleStatement), format(readModifyWrite / singleStatement));
+        assertThat(singleStatement).isLessThan(readModifyWrite);
+    }
+
+    private double measure(String name, BiFunction<MemberRepository, PlatformTransactionManager, Runnable> transfer) {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setPoolName("transfer-" + name);
+        config.setUrl(URL);
+        config.setMinSize(1);
+        config.setMaxSize(1);
+        try (ConnectionPool pool = new ConnectionPool(config)) {
+            JdbcTemplate template = new JdbcTemplate(pool);
+            template.execute("create table if not exists member(member_id varchar(10), money integer not null default 0, primary key (member_id))");
+            template.update("delete from member where member_id in ('memberA', 'memberB')");
+
+            MemberRepository repository = new MemberRepositoryV5(pool);
+            repository.save(new Member("memberA", 1_000_000));
+            repository.save(new Member("memberB", 1_000_000));
+            Runnable operation = transfer.apply(repository, new DataSourceTransactionManager(pool));
+
+            for (int i = 0; i < WARMUP; i++) {
+                operation.run();
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                operation.run();
+            }
+            double micros = (System.nanoTime() - start) / 1_000.0 / ITERATIONS;
+
+            assertThat(repository.findById("memberA").getMoney()).isEqualTo(1_000_000 - WARMUP - ITERATIONS);
+            template.update("delete from member where member_id in ('memberA', 'memberB')");
+            return micros;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(T service, PlatformTransactionManager transactionManager) {
+        ProxyFactory proxyFactory = new ProxyFactory(service);
+        proxyFactory.addAdvice(new TransactionInterceptor((TransactionManager) transactionManager, new AnnotationTransactionAttributeSource()));
+        return (T) proxyFactory.getProxy();
+    }
+
+    private static String format(double micros) {
+        return String.format("%.1f", micros);
+    }
+}